@@ -0,0 +1,67 @@
+package com.fintegerllp.authapi.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.dto.ApiResponseDto;
+import com.fintegerllp.authapi.dto.RawUserProfileDto;
+import com.fintegerllp.authapi.dto.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ApiResponseDto serialization with the ObjectMapper settings Spring MVC uses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ApiResponseDto<UserDto> userResponse;
+    private ApiResponseDto<RawUserProfileDto> profileResponse;
+    private ApiResponseDto<Object> errorResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        userResponse = ApiResponseDto.success("User retrieved successfully", UserDto.builder()
+                .id(42L)
+                .name("Jane Doe")
+                .email("jane.doe@example.com")
+                .build());
+        profileResponse = ApiResponseDto.success("Profile retrieved successfully", RawUserProfileDto.builder()
+                .userId(42L)
+                .profileData(objectMapper.writeValueAsString(ProfileJsonBenchmark.profile(32)))
+                .settings("{\"theme\":\"dark\",\"language\":\"en\"}")
+                .build());
+        errorResponse = ApiResponseDto.error("User not found");
+    }
+
+    @Benchmark
+    public byte[] user() throws Exception {
+        return objectMapper.writeValueAsBytes(userResponse);
+    }
+
+    @Benchmark
+    public byte[] rawProfile() throws Exception {
+        return objectMapper.writeValueAsBytes(profileResponse);
+    }
+
+    @Benchmark
+    public byte[] error() throws Exception {
+        return objectMapper.writeValueAsBytes(errorResponse);
+    }
+}
@@ -0,0 +1,165 @@
+package com.fintegerllp.authapi.bench;
+
+import com.fintegerllp.authapi.config.SecurityConfig;
+import com.fintegerllp.authapi.security.CachingJwtAuthenticationManager;
+import com.fintegerllp.authapi.security.JwkSetKeyStore;
+import com.fintegerllp.authapi.security.KeycloakRoleConverter;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bearer token authentication on a Keycloak-shaped RS256 token signed with a
+ * local key: the production decoder and role converter, with and without the
+ * authentication cache in front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private static final String ISSUER = "http://localhost:8180/auth/realms/fintegerllp";
+    private static final String CLIENT_ID = "uaetaxlaws";
+
+    private HttpServer jwksServer;
+    private JwtDecoder jwtDecoder;
+    private JwtAuthenticationConverter jwtAuthenticationConverter;
+    private JwtAuthenticationProvider jwtAuthenticationProvider;
+    private CachingJwtAuthenticationManager cachingAuthenticationManager;
+    private String token;
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() throws Exception {
+        RSAKey signingKey = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate();
+        byte[] jwks = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+
+        // JwkSetKeyStore loads its keys over HTTP, as from Keycloak
+        jwksServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        jwksServer.createContext("/certs", exchange -> {
+            exchange.sendResponseHeaders(200, jwks.length);
+            exchange.getResponseBody().write(jwks);
+            exchange.close();
+        });
+        jwksServer.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwkSetKeyStore keyStore = new JwkSetKeyStore(meterRegistry,
+                new URL("http://127.0.0.1:" + jwksServer.getAddress().getPort() + "/certs"), 2000, 2000, 10000);
+        keyStore.afterPropertiesSet();
+
+        SecurityConfig securityConfig = new SecurityConfig(new KeycloakRoleConverter(CLIENT_ID, 1000));
+        jwtDecoder = securityConfig.jwtDecoder(keyStore, ISSUER);
+        jwtAuthenticationConverter = securityConfig.jwtAuthenticationConverter();
+        jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtDecoder);
+        jwtAuthenticationProvider.setJwtAuthenticationConverter(jwtAuthenticationConverter);
+        cachingAuthenticationManager = new CachingJwtAuthenticationManager(
+                jwtAuthenticationProvider::authenticate, meterRegistry, 10000, Duration.ofMinutes(5));
+
+        token = keycloakToken(signingKey);
+        jwt = jwtDecoder.decode(token);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jwksServer.stop(0);
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return jwtDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Authentication convert() {
+        return jwtAuthenticationConverter.convert(jwt);
+    }
+
+    @Benchmark
+    public Authentication decodeAndConvert() {
+        return jwtAuthenticationProvider.authenticate(new BearerTokenAuthenticationToken(token));
+    }
+
+    @Benchmark
+    public Authentication cachedAuthentication() {
+        return cachingAuthenticationManager.authenticate(new BearerTokenAuthenticationToken(token));
+    }
+
+    /**
+     * Signs an access token with the claims Keycloak puts in a realm user's token
+     */
+    private static String keycloakToken(RSAKey signingKey) throws Exception {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(UUID.randomUUID().toString())
+                .audience("account")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("typ", "Bearer")
+                .claim("azp", CLIENT_ID)
+                .claim("sid", UUID.randomUUID().toString())
+                .claim("acr", "1")
+                .claim("allowed-origins", List.of("http://localhost:3000"))
+                .claim("realm_access", Map.of("roles",
+                        List.of("default-roles-fintegerllp", "offline_access", "uma_authorization", "USER")))
+                .claim("resource_access", Map.of(
+                        CLIENT_ID, Map.of("roles", List.of("profile-editor")),
+                        "account", Map.of("roles", List.of("manage-account", "manage-account-links", "view-profile"))))
+                .claim("scope", "openid email profile")
+                .claim("email_verified", true)
+                .claim("name", "Jane Doe")
+                .claim("preferred_username", "jane.doe@example.com")
+                .claim("given_name", "Jane")
+                .claim("family_name", "Doe")
+                .claim("email", "jane.doe@example.com")
+                .build();
+
+        SignedJWT signed = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .type(JOSEObjectType.JWT)
+                .keyID(signingKey.getKeyID())
+                .build(), claims);
+        signed.sign(new RSASSASigner(signingKey));
+        return signed.serialize();
+    }
+}
@@ -0,0 +1,75 @@
+package com.fintegerllp.authapi.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.service.ProfileJsonCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile JSON parse and serialize as done by UserService, at several profile sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileJsonBenchmark {
+
+    @Param({"4", "32", "512"})
+    private int fields;
+
+    private ProfileJsonCodec codec;
+    private String json;
+    private Map<String, Object> profile;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        codec = new ProfileJsonCodec(objectMapper, new SimpleMeterRegistry());
+        profile = profile(fields);
+        json = objectMapper.writeValueAsString(profile);
+    }
+
+    @Benchmark
+    public Map<String, Object> parse() throws Exception {
+        return codec.readMap(json);
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return codec.write(profile);
+    }
+
+    /**
+     * Builds a profile mixing scalars, nested objects and arrays, as the UI stores them
+     */
+    static Map<String, Object> profile(int fields) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        for (int i = 0; i < fields; i++) {
+            switch (i % 4) {
+                case 0 -> profile.put("field" + i, "value " + i);
+                case 1 -> profile.put("field" + i, i * 31L);
+                case 2 -> profile.put("field" + i, Map.of("enabled", i % 3 == 0, "label", "Label " + i, "order", i));
+                default -> profile.put("field" + i, List.of("a" + i, "b" + i, "c" + i));
+            }
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,61 @@
+package com.fintegerllp.authapi.bench;
+
+import com.fintegerllp.authapi.dto.UserDto;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserService.mapUserToDto, called through a method handle since it is private
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private MethodHandle mapUserToDto;
+    private User user;
+
+    @Setup
+    public void setUp() throws Exception {
+        // mapUserToDto uses none of the collaborators
+        Constructor<?> constructor = UserService.class.getDeclaredConstructors()[0];
+        UserService userService = (UserService) constructor.newInstance(new Object[constructor.getParameterCount()]);
+
+        mapUserToDto = MethodHandles.privateLookupIn(UserService.class, MethodHandles.lookup())
+                .findVirtual(UserService.class, "mapUserToDto", MethodType.methodType(UserDto.class, User.class))
+                .bindTo(userService);
+        user = User.builder()
+                .id(42L)
+                .keycloakId("3f1c2a9e-5b7d-4e21-9c4a-8d2f6b0e1a77")
+                .name("Jane Doe")
+                .email("jane.doe@example.com")
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Benchmark
+    public UserDto mapUserToDto() throws Throwable {
+        return (UserDto) mapUserToDto.invokeExact(user);
+    }
+}
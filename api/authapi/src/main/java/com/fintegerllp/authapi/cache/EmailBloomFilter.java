@@ -0,0 +1,327 @@
+package com.fintegerllp.authapi.cache;
+
+import com.fintegerllp.authapi.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Counting Bloom filter of registered emails, used to skip the database probe
+ * for emails that are certainly not registered. It is built from the users
+ * table once the application is ready and kept up to date by
+ * {@link EmailBloomFilterListener}. It only ever errs towards "maybe", so a
+ * positive answer still has to be confirmed in Postgres. Emails added inside
+ * a transaction are added again on commit to any filter that was rebuilt
+ * meanwhile, since the rebuild's snapshot may not have seen them.
+ */
+@Component
+@Slf4j
+public class EmailBloomFilter {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile Counters current;
+    private volatile Counters building;
+    private volatile boolean ready;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final Counter negatives;
+    private final Counter positives;
+    private final Counter falsePositives;
+
+    public EmailBloomFilter(MeterRegistry meterRegistry,
+                            UserRepository userRepository,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${app.registration.email-filter.enabled:true}") boolean enabled,
+                            @Value("${app.registration.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${app.registration.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new Counters(expectedInsertions, falsePositiveRate);
+
+        this.negatives = Counter.builder("email.filter.checks")
+                .description("Email existence checks answered by the Bloom filter")
+                .tag("result", "absent")
+                .register(meterRegistry);
+        this.positives = Counter.builder("email.filter.checks")
+                .description("Email existence checks answered by the Bloom filter")
+                .tag("result", "maybe")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("email.filter.false-positives")
+                .description("Bloom filter positives the database did not confirm")
+                .register(meterRegistry);
+        Gauge.builder("email.filter.false-positive-rate", this, EmailBloomFilter::observedFalsePositiveRate)
+                .description("Share of Bloom filter positives the database did not confirm")
+                .register(meterRegistry);
+        Gauge.builder("email.filter.expected-false-positive-rate", this, filter -> filter.current.expectedFalsePositiveRate())
+                .description("False positive rate expected from the filter's size and load")
+                .register(meterRegistry);
+        Gauge.builder("email.filter.memory", this, filter -> filter.current.memoryBytes())
+                .description("Memory held by the filter counters")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("email.filter.entries", this, filter -> filter.current.entries())
+                .description("Emails added to the filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the filter from the users table once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild(expectedInsertions);
+        }
+    }
+
+    /**
+     * Checks whether an email may be registered
+     *
+     * @param email Email
+     * @return boolean false if the email is certainly not registered
+     */
+    public boolean mightContain(String email) {
+        if (!ready) {
+            return true;
+        }
+        boolean result = current.mightContain(hash(email));
+        (result ? positives : negatives).increment();
+        return result;
+    }
+
+    /**
+     * Records that the database did not confirm a positive answer
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Adds a registered email
+     *
+     * @param email Email
+     */
+    public void add(String email) {
+        if (!enabled || email == null) {
+            return;
+        }
+        long hash = hash(email);
+        Counters added = current;
+        added.add(hash);
+        Counters next = building;
+        if (next != null) {
+            next.add(hash);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A rebuild that started before the insert commits streams a snapshot without it,
+            // so the email goes into whichever filters were swapped in or started since
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    Counters now = current;
+                    if (now != added && now != next) {
+                        now.add(hash);
+                    }
+                    Counters later = building;
+                    if (later != null && later != next && later != now) {
+                        later.add(hash);
+                    }
+                }
+            });
+        }
+
+        // Grow once the filter holds more emails than it was sized for
+        if (ready && current.isOverloaded() && rebuilding.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> rebuild(current.capacity() * 2));
+        }
+    }
+
+    /**
+     * Removes an email whose user was deleted
+     *
+     * @param email Email
+     */
+    public void remove(String email) {
+        // Before the filter is built a removal could take away counts of emails not added yet
+        if (!ready || email == null) {
+            return;
+        }
+        current.remove(hash(email));
+    }
+
+    /**
+     * Streams the users table into a new filter and swaps it in
+     *
+     * @param capacity Number of emails to size the filter for
+     */
+    private void rebuild(long capacity) {
+        rebuilding.set(true);
+        try {
+            long start = System.nanoTime();
+            Counters next = new Counters(capacity, falsePositiveRate);
+            building = next;
+            long count = transactionTemplate.execute(status -> {
+                try (Stream<String> emails = userRepository.streamAllEmails()) {
+                    return emails.peek(email -> next.add(hash(email))).count();
+                }
+            });
+            if (next.isOverloaded()) {
+                building = null;
+                rebuild(count * 2);
+                return;
+            }
+
+            current = next;
+            building = null;
+            ready = true;
+            log.info("Email Bloom filter built with {} emails in {} ms ({} KiB)",
+                    count, (System.nanoTime() - start) / 1_000_000, next.memoryBytes() / 1024);
+        } catch (RuntimeException e) {
+            building = null;
+            log.error("Failed to build email Bloom filter, email checks go to the database: {}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private double observedFalsePositiveRate() {
+        double maybe = positives.count();
+        return maybe == 0 ? 0 : falsePositives.count() / maybe;
+    }
+
+    /**
+     * Hashes a normalized email into a 64-bit value, split into two hashes by {@link Counters}
+     */
+    private static long hash(String email) {
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            h ^= normalized.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Fixed-size array of 4-bit counters, sixteen to a long, updated with CAS.
+     * Saturated counters are never decremented, so removals cannot cause false negatives.
+     */
+    private static final class Counters {
+
+        private static final long SATURATED = 0xF;
+
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+        private final long capacity;
+        private final AtomicLong entries = new AtomicLong();
+
+        Counters(long capacity, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 15) / 16)));
+            this.size = words.length() * 16L;
+            this.hashes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        boolean mightContain(long hash) {
+            long h1 = fmix(hash);
+            long h2 = fmix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long index = Math.floorMod(h1 + i * h2, size);
+                if (counter(words.get((int) (index >>> 4)), index) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash) {
+            update(hash, 1);
+            entries.incrementAndGet();
+        }
+
+        void remove(long hash) {
+            if (mightContain(hash)) {
+                update(hash, -1);
+                entries.decrementAndGet();
+            }
+        }
+
+        private void update(long hash, int delta) {
+            long h1 = fmix(hash);
+            long h2 = fmix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long index = Math.floorMod(h1 + i * h2, size);
+                int word = (int) (index >>> 4);
+                long shift = (index & 15) << 2;
+                while (true) {
+                    long value = words.get(word);
+                    long counter = (value >>> shift) & SATURATED;
+                    if (counter == SATURATED || (delta < 0 && counter == 0)) {
+                        break;
+                    }
+                    if (words.compareAndSet(word, value, value + ((long) delta << shift))) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private static long counter(long word, long index) {
+            return (word >>> ((index & 15) << 2)) & SATURATED;
+        }
+
+        private static long fmix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        boolean isOverloaded() {
+            return entries.get() > capacity;
+        }
+
+        long capacity() {
+            return capacity;
+        }
+
+        long entries() {
+            return entries.get();
+        }
+
+        long memoryBytes() {
+            return words.length() * 8L;
+        }
+
+        double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * entries.get() / size), hashes);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.fintegerllp.authapi.cache;
+
+import com.fintegerllp.authapi.repository.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener that keeps {@link EmailBloomFilter} in step with the users table.
+ * Emails are added as soon as they are inserted, so a rolled back insert only
+ * leaves a false positive, and once more on commit if the filter was rebuilt
+ * in between; they are removed once the delete has committed. Updates
+ * are ignored: the listener cannot see the previous email, so the only code
+ * changing emails in place, {@link com.fintegerllp.authapi.service.KeycloakEventIngestionWorker},
+ * maintains the filter itself.
+ */
+@Component
+public class EmailBloomFilterListener {
+
+    private final EmailBloomFilter emailBloomFilter;
+
+    // Hibernate creates this listener while the entity manager factory is being
+    // built, before the repository and transaction manager the filter needs exist;
+    // the proxy only resolves the filter on first use, once the context is up
+    public EmailBloomFilterListener(@Lazy EmailBloomFilter emailBloomFilter) {
+        this.emailBloomFilter = emailBloomFilter;
+    }
+
+    @PostPersist
+    public void onInsert(User user) {
+        emailBloomFilter.add(user.getEmail());
+    }
+
+    @PostRemove
+    public void onRemove(User user) {
+        String email = user.getEmail();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            emailBloomFilter.remove(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                emailBloomFilter.remove(email);
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package com.fintegerllp.authapi.cache;
+
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of users keyed by Keycloak subject, used on the authenticated
+ * request path. Entries are immutable projections of the users columns.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<String, UserSummary> cache;
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${app.cache.users.max-size:10000}") long maxSize,
+                     @Value("${app.cache.users.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.by-keycloak-id");
+    }
+
+    /**
+     * Gets a user by Keycloak ID, loading it on a miss
+     *
+     * @param keycloakId Keycloak user ID
+     * @param loader Loads the user from the database
+     * @return Optional<UserSummary> cached user
+     */
+    public Optional<UserSummary> get(String keycloakId, Function<String, Optional<UserSummary>> loader) {
+        return Optional.ofNullable(cache.get(keycloakId, id -> loader.apply(id).orElse(null)));
+    }
+
+    /**
+     * Evicts a user
+     *
+     * @param keycloakId Keycloak user ID
+     */
+    public void evict(String keycloakId) {
+        if (keycloakId != null) {
+            cache.invalidate(keycloakId);
+        }
+    }
+
+}
\ No newline at end of file
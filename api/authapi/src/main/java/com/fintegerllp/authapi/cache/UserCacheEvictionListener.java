@@ -0,0 +1,39 @@
+package com.fintegerllp.authapi.cache;
+
+import com.fintegerllp.authapi.repository.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener that evicts {@link UserCache} entries when a user row is written.
+ * The entry is evicted immediately and again after commit, so a concurrent
+ * read cannot re-cache the pre-commit row.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheEvictionListener {
+
+    private final UserCache userCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(User user) {
+        String keycloakId = user.getKeycloakId();
+        userCache.evict(keycloakId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    userCache.evict(keycloakId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.fintegerllp.authapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read/write splitting across the primary and its replicas. Connections are
+ * handed out lazily, so the first statement sees whether the transaction was
+ * marked read-only: {@code @Transactional(readOnly = true)} work goes to
+ * {@link ReplicaDataSource}, everything else to the primary pool configured
+ * under spring.datasource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+@Slf4j
+public class DataSourceRoutingConfig {
+
+    @Value("${app.datasource.replicas.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${app.datasource.replicas.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replicas.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replicas.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${app.datasource.replicas.connection-timeout-ms:1000}")
+    private long replicaConnectionTimeoutMs;
+
+    @Value("${app.datasource.replicas.max-lag-seconds:10}")
+    private double maxLagSeconds;
+
+    /**
+     * Creates the primary pool from spring.datasource and spring.datasource.hikari
+     *
+     * @param properties spring.datasource properties
+     * @return HikariDataSource primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Creates the replica pools behind a single read-only data source
+     *
+     * @param primaryDataSource Primary pool to fall back to
+     * @param readYourWrites Tracker of subjects that just wrote
+     * @param meterRegistry Meter registry
+     * @return ReplicaDataSource replica data source, closing its pools on shutdown
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                               ReadYourWritesTracker readYourWrites,
+                                               MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(replicaUrls.get(i).trim());
+            pool.setUsername(replicaUsername);
+            pool.setPassword(replicaPassword);
+            pool.setMaximumPoolSize(replicaPoolSize);
+            pool.setReadOnly(true);
+            // Fail over to the primary quickly instead of queueing on a dead replica
+            pool.setConnectionTimeout(replicaConnectionTimeoutMs);
+            // Start even if a replica is down, the health check puts it back later
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+        }
+
+        log.info("Routing read-only transactions to {} replica(s)", pools.size());
+        return new ReplicaDataSource(primaryDataSource, pools, readYourWrites, maxLagSeconds, meterRegistry);
+    }
+
+    /**
+     * Creates the data source used by JPA, choosing the target on the first statement
+     *
+     * @param primaryDataSource Primary pool
+     * @param replicaDataSource Replica data source
+     * @return DataSource routing data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.fintegerllp.authapi.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in Hibernate second-level cache for users and profiles, held in-process
+ * by Caffeine through JCache. Every region is created here with its size and
+ * TTL, so no cache server or provider config file is needed.
+ * <p>
+ * Only the entity and natural-id regions are used, since they are invalidated
+ * per row: user loads go through the Keycloak ID natural id, and native writes
+ * evict just the rows they touch. The query cache is left off because any
+ * write to a table drops every cached result over it. Email lookups are not
+ * cached; an entity has a single natural id, email changes, and the Bloom
+ * filter already answers most of them without a query. Profile reads by user
+ * stay single keyed queries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.cache.hibernate.enabled", havingValue = "true")
+@Slf4j
+public class HibernateCacheConfig {
+
+    public static final String USERS_REGION = "users";
+    public static final String USERS_BY_KEYCLOAK_ID_REGION = "users-by-keycloak-id";
+    public static final String USER_PROFILES_REGION = "user-profiles";
+
+    @Value("${app.cache.hibernate.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.cache.hibernate.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${app.cache.hibernate.statistics:true}")
+    private boolean statistics;
+
+    /**
+     * Creates the JCache manager holding the Hibernate cache regions
+     *
+     * @return CacheManager cache manager, closed on context shutdown
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        // A manager of its own rather than the JVM-wide default, so several contexts can coexist
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("authapi-hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        for (String region : new String[]{USERS_REGION, USERS_BY_KEYCLOAK_ID_REGION, USER_PROFILES_REGION}) {
+            cacheManager.createCache(region, regionConfiguration(maxSize, ttlSeconds));
+        }
+
+        log.info("Hibernate second-level cache enabled (max size: {}, ttl: {}s)", maxSize, ttlSeconds);
+        return cacheManager;
+    }
+
+    /**
+     * Turns on the second-level cache backed by the JCache manager
+     *
+     * @param hibernateCacheManager JCache manager
+     * @return HibernatePropertiesCustomizer customizer
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            // Picked up by the Hibernate metrics binder and exposed through actuator
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> regionConfiguration(long maximumSize, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // Hibernate stores immutable disassembled state, copying it on every access is wasted work
+        configuration.setStoreByValue(false);
+        if (maximumSize >= 0) {
+            configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        }
+        if (ttlSeconds >= 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        }
+        return configuration;
+    }
+}
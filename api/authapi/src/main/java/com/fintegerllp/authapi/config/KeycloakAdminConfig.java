@@ -0,0 +1,91 @@
+package com.fintegerllp.authapi.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared Keycloak admin client configuration.
+ * A single client is kept for the lifetime of the application so the pooled
+ * HTTP connections and the admin access token are reused across calls.
+ */
+@Configuration
+@Slf4j
+public class KeycloakAdminConfig {
+
+    @Value("${keycloak.auth-server-url}")
+    private String serverUrl;
+
+    @Value("${keycloak.admin.client-id}")
+    private String clientId;
+
+    @Value("${keycloak.admin.username}")
+    private String adminUsername;
+
+    @Value("${keycloak.admin.password}")
+    private String adminPassword;
+
+    @Value("${keycloak.admin.realm}")
+    private String adminRealm;
+
+    @Value("${keycloak.admin.pool-size:20}")
+    private int poolSize;
+
+    @Value("${keycloak.admin.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${keycloak.admin.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${keycloak.admin.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    @Value("${keycloak.admin.checkout-timeout-ms:2000}")
+    private long checkoutTimeoutMs;
+
+    @Value("${keycloak.admin.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    @Value("${keycloak.admin.token-refresh-skew-seconds:30}")
+    private long tokenRefreshSkewSeconds;
+
+    /**
+     * Creates the long-lived Keycloak admin client
+     *
+     * @return Keycloak admin client, closed on context shutdown
+     */
+    @Bean(destroyMethod = "close")
+    public Keycloak keycloakAdminClient() {
+        ResteasyClient resteasyClient = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .connectionPoolSize(poolSize)
+                .maxPooledPerRoute(maxPerRoute)
+                .connectionTTL(connectionTtlSeconds, TimeUnit.SECONDS)
+                .connectionCheckoutTimeout(checkoutTimeoutMs, TimeUnit.MILLISECONDS)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        Keycloak keycloak = KeycloakBuilder.builder()
+                .serverUrl(serverUrl)
+                .realm(adminRealm)
+                .clientId(clientId)
+                .username(adminUsername)
+                .password(adminPassword)
+                .resteasyClient(resteasyClient)
+                .build();
+
+        // Refresh the cached admin token this many seconds before it expires
+        keycloak.tokenManager().setMinTokenValidity(tokenRefreshSkewSeconds);
+
+        log.info("Keycloak admin client initialised (pool size: {}, per route: {})", poolSize, maxPerRoute);
+        return keycloak;
+    }
+}
@@ -0,0 +1,71 @@
+package com.fintegerllp.authapi.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Refreshes the Keycloak admin token ahead of the client's own refresh window,
+ * so requests normally find a valid token and do not pay for the token call.
+ * A token is refreshed three quarters into its lifetime, or earlier if that
+ * would fall inside the client's window, but never before half of it.
+ * Request threads still read the token through TokenManager's synchronized
+ * methods, so while this refresh is in flight they wait for it.
+ */
+@Component
+@Slf4j
+public class KeycloakTokenRefresher {
+
+    private final TokenManager tokenManager;
+    private final long tokenRefreshSkewSeconds;
+    private volatile Instant refreshAt = Instant.EPOCH;
+
+    public KeycloakTokenRefresher(Keycloak keycloak,
+                                  @Value("${keycloak.admin.token-refresh-skew-seconds:30}") long tokenRefreshSkewSeconds) {
+        this.tokenManager = keycloak.tokenManager();
+        this.tokenRefreshSkewSeconds = tokenRefreshSkewSeconds;
+    }
+
+    /**
+     * Refreshes the admin token when it is about to enter the client's refresh window
+     */
+    @Scheduled(fixedDelayString = "${keycloak.admin.token-refresh-check-ms:5000}")
+    public void refreshIfDue() {
+        if (Instant.now().isBefore(refreshAt)) {
+            return;
+        }
+
+        try {
+            AccessTokenResponse token;
+            try {
+                token = tokenManager.refreshToken();
+            } catch (RuntimeException e) {
+                // No token yet or the refresh token has expired
+                token = tokenManager.grantToken();
+            }
+            refreshAt = Instant.now().plusSeconds(refreshDelaySeconds(token.getExpiresIn(), tokenRefreshSkewSeconds));
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh Keycloak admin token: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the time until a freshly issued token is refreshed
+     *
+     * @param expiresIn Token lifetime in seconds
+     * @param tokenRefreshSkewSeconds Window before expiry in which the client refreshes on its own
+     * @return long seconds to wait, at least one
+     */
+    static long refreshDelaySeconds(long expiresIn, long tokenRefreshSkewSeconds) {
+        // Refresh before the client's own skew window so it never has to, and a quarter ahead for long lifetimes
+        long ahead = Math.max(tokenRefreshSkewSeconds, expiresIn / 4);
+        // Short lifetimes would otherwise be refreshed on every check
+        return Math.max(1, Math.max(expiresIn / 2, expiresIn - ahead));
+    }
+}
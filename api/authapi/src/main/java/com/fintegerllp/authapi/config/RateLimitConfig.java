@@ -0,0 +1,40 @@
+package com.fintegerllp.authapi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.security.RateLimitFilter;
+import com.fintegerllp.authapi.security.RateLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Rate limiting of the public auth endpoints, registered ahead of the Spring
+ * Security filter chain so throttled requests never reach token validation.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true")
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    /**
+     * Registers the rate limit filter just before the security filter chain
+     *
+     * @param properties Limits by endpoint
+     * @param objectMapper Object mapper for request and error bodies
+     * @param meterRegistry Meter registry
+     * @return FilterRegistrationBean<RateLimitFilter> filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitProperties properties,
+                                                                   ObjectMapper objectMapper,
+                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+                new RateLimitFilter(properties, objectMapper, meterRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
@@ -0,0 +1,74 @@
+package com.fintegerllp.authapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+
+/**
+ * Remembers which subjects committed a write recently, so their reads can be
+ * kept on the primary until replicas have caught up. Every committed
+ * read-write transaction marks the authenticated subject; writes made for
+ * someone else, like a registration, are marked explicitly.
+ */
+@Component
+public class ReadYourWritesTracker implements TransactionExecutionListener {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(@Value("${app.datasource.read-your-writes-ms:0}") long windowMs,
+                                 @Value("${app.datasource.read-your-writes-max-subjects:100000}") long maxSubjects) {
+        this.recentWriters = windowMs > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(maxSubjects)
+                        .expireAfterWrite(Duration.ofMillis(windowMs))
+                        .build()
+                : null;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure == null && transaction.isNewTransaction() && !transaction.isReadOnly()) {
+            recordWrite(currentSubject());
+        }
+    }
+
+    /**
+     * Records that a subject's data was just written
+     *
+     * @param subject Keycloak user ID
+     */
+    public void recordWrite(String subject) {
+        if (recentWriters != null && subject != null) {
+            recentWriters.put(subject, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Checks whether the current subject wrote within the window
+     *
+     * @return boolean true if reads should go to the primary
+     */
+    public boolean currentSubjectRecentlyWrote() {
+        if (recentWriters == null) {
+            return false;
+        }
+        String subject = currentSubject();
+        return subject != null && recentWriters.getIfPresent(subject) != null;
+    }
+
+    private static String currentSubject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+            return jwt.getSubject();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.fintegerllp.authapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only connections spread round-robin over healthy replica pools. Falls
+ * back to the primary when no replica is healthy, a replica refuses a
+ * connection, or the current subject has just written and must read its own
+ * writes. Replicas are marked down by {@link #checkHealth()} when they are
+ * unreachable or lag behind the primary by more than the allowed delay.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // Lag is only meaningful while WAL is still being replayed; an idle replica is current
+    private static final String LAG_QUERY = "select case when not pg_is_in_recovery() "
+            + "or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+            + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWritesTracker readYourWrites;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter replicaReads;
+    private final Counter readYourWritesReads;
+    private final Counter fallbackReads;
+
+    public ReplicaDataSource(HikariDataSource primary, List<HikariDataSource> replicaPools,
+                             ReadYourWritesTracker readYourWrites, double maxLagSeconds, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLagSeconds = maxLagSeconds;
+
+        this.replicaReads = readCounter(meterRegistry, "replica", "replica");
+        this.readYourWritesReads = readCounter(meterRegistry, "primary", "read-your-writes");
+        this.fallbackReads = readCounter(meterRegistry, "primary", "fallback");
+        Gauge.builder("datasource.replicas.healthy", this, ReplicaDataSource::healthyReplicas)
+                .description("Replica pools currently receiving read-only transactions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (readYourWrites.currentSubjectRecentlyWrote()) {
+            readYourWritesReads.increment();
+            return primary.getConnection();
+        }
+
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.markDown("connection failed: " + e.getMessage());
+            }
+        }
+
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    // Like the Hikari pools behind it, only the configured credentials are supported
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the pool credentials");
+    }
+
+    /**
+     * Probes every replica and updates its health from reachability and replication lag
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-check-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                double lagSeconds = resultSet.getDouble(1);
+                if (lagSeconds > maxLagSeconds) {
+                    replica.markDown("lagging " + lagSeconds + "s behind the primary");
+                } else {
+                    replica.markUp();
+                }
+            } catch (SQLException e) {
+                replica.markDown("health check failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("datasource.reads")
+                .description("Read-only connections by target and routing reason")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        void markDown(String reason) {
+            if (healthy) {
+                log.warn("Replica {} taken out of rotation, {}", pool.getPoolName(), reason);
+            }
+            healthy = false;
+        }
+
+        void markUp() {
+            if (!healthy) {
+                log.info("Replica {} back in rotation", pool.getPoolName());
+            }
+            healthy = true;
+        }
+    }
+}
@@ -25,8 +25,8 @@ public class SimpleCorsFilter implements Filter {
         // For preflight requests
         if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
             response.setHeader("Access-Control-Allow-Origin", "http://localhost:3000");
-            response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS, DELETE, PUT");
-            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Origin");
+            response.setHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS, DELETE, PUT, PATCH");
+            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Origin, If-Match, If-None-Match");
             response.setHeader("Access-Control-Allow-Credentials", "true");
             response.setHeader("Access-Control-Max-Age", "3600");
             response.setStatus(HttpServletResponse.SC_OK);
@@ -0,0 +1,98 @@
+package com.fintegerllp.authapi.controller;
+
+import com.fintegerllp.authapi.dto.ApiResponseDto;
+import com.fintegerllp.authapi.dto.UserPageDto;
+import com.fintegerllp.authapi.repository.UserSearchCriteria;
+import com.fintegerllp.authapi.service.UserExportService;
+import com.fintegerllp.authapi.service.UserSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+
+@RestController
+@RequestMapping("/admin/users")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminUserController {
+
+    private final UserSearchService userSearchService;
+    private final UserExportService userExportService;
+
+    /**
+     * List users newest first, optionally filtered; follow nextCursor for the next page
+     *
+     * @param email Case-insensitive email prefix
+     * @param name Case-insensitive name prefix
+     * @param createdFrom Created at or after (ISO date-time)
+     * @param createdTo Created before (ISO date-time)
+     * @param updatedFrom Updated at or after (ISO date-time)
+     * @param updatedTo Updated before (ISO date-time)
+     * @param cursor Opaque cursor from the previous page
+     * @param limit Page size
+     * @return ApiResponseDto<UserPageDto> Users and the next page cursor
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponseDto<UserPageDto>> listUsers(
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            UserSearchCriteria criteria = new UserSearchCriteria(
+                    blankToNull(email), blankToNull(name), createdFrom, createdTo, updatedFrom, updatedTo);
+            return ResponseEntity.ok(ApiResponseDto.success(userSearchService.searchUsers(criteria, cursor, limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDto.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error listing users: {}", e.getMessage());
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponseDto.error("Failed to list users"));
+        }
+    }
+
+    /**
+     * Export all users with their profiles, streamed row by row as a download
+     *
+     * @param format ndjson or csv
+     * @param gzip Whether to gzip the file
+     * @return StreamingResponseBody The export, written as it is read from the database
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        UserExportService.Format exportFormat = UserExportService.Format.of(format);
+        String filename = "users." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+
+        StreamingResponseBody body = out -> userExportService.export(exportFormat, gzip, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponseDto<Object>> handleIllegalArgumentException(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(ApiResponseDto.error(e.getMessage()));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
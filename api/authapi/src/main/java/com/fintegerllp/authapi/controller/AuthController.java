@@ -1,20 +1,28 @@
 package com.fintegerllp.authapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fintegerllp.authapi.dto.ApiResponseDto;
+import com.fintegerllp.authapi.dto.ImportSummaryDto;
 import com.fintegerllp.authapi.dto.LoginDto;
 import com.fintegerllp.authapi.dto.RegistrationDto;
 import com.fintegerllp.authapi.dto.UserDto;
 import com.fintegerllp.authapi.exception.EmailAlreadyExistsException;
 import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
 import com.fintegerllp.authapi.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,6 +34,7 @@ import java.util.Map;
 public class AuthController {
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @Value("${keycloak.auth-server-url}")
     private String keycloakServerUrl;
@@ -52,7 +61,7 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                     .body(ApiResponseDto.error(e.getMessage()));
         } catch (KeycloakIntegrationException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body(ApiResponseDto.error("Authentication service error: " + e.getMessage()));
         } catch (Exception e) {
             log.error("Error registering user: {}", e.getMessage());
@@ -61,6 +70,32 @@ public class AuthController {
         }
     }
 
+    /**
+     * Bulk import users from an NDJSON or CSV (name,email,password header) body
+     *
+     * @param contentType application/x-ndjson or text/csv
+     * @param body Registration rows, one per line
+     * @param response NDJSON stream of per-row results followed by a summary line
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public void importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                            InputStream body, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/x-ndjson");
+        OutputStream out = response.getOutputStream();
+
+        ImportSummaryDto summary = userService.importUsers(body, contentType.startsWith("text/csv"), row -> {
+            try {
+                writeLine(out, row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        writeLine(out, Map.of("summary", summary));
+        out.flush();
+    }
+
     /**
      * Provides client with Keycloak configuration
      *
@@ -100,4 +135,9 @@ public class AuthController {
         UserDto userDto = userService.getCurrentUser();
         return ResponseEntity.ok(ApiResponseDto.success(userDto));
     }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
 }
\ No newline at end of file
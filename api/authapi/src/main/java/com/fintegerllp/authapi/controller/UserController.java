@@ -1,14 +1,24 @@
 package com.fintegerllp.authapi.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fintegerllp.authapi.dto.ApiResponseDto;
+import com.fintegerllp.authapi.dto.RawUserProfileDto;
 import com.fintegerllp.authapi.dto.UserProfileDto;
+import com.fintegerllp.authapi.exception.PreconditionFailedException;
 import com.fintegerllp.authapi.exception.ProfileNotFoundException;
 import com.fintegerllp.authapi.exception.UserNotFoundException;
+import com.fintegerllp.authapi.service.ProfileJsonCodec;
 import com.fintegerllp.authapi.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
 
 @RestController
 @RequestMapping("/users")
@@ -18,17 +28,40 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final ProfileJsonCodec profileJson;
+
+    @Value("${app.profile.raw-json:true}")
+    private boolean rawJson;
 
     /**
-     * Get the current user's profile
+     * Get the current user's profile, or 304 if it matches If-None-Match
      *
-     * @return ApiResponseDto<UserProfileDto> User profile data
+     * @param request Web request carrying the conditional headers
+     * @return ApiResponseDto<RawUserProfileDto> or ApiResponseDto<UserProfileDto> User profile data
      */
     @GetMapping("/profile")
-    public ResponseEntity<ApiResponseDto<UserProfileDto>> getUserProfile() {
+    public ResponseEntity<ApiResponseDto<?>> getUserProfile(WebRequest request) {
         try {
+            // Compare versions before loading and parsing the profile JSON, an
+            // unconditional request goes straight to the single profile query
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+                String etag = userService.getUserProfileETag();
+                if (request.checkNotModified(etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+            }
+
+            if (rawJson) {
+                RawUserProfileDto rawProfileDto = userService.getRawUserProfile();
+                return ResponseEntity.ok()
+                        .eTag(rawProfileDto.getEtag())
+                        .body(ApiResponseDto.success(rawProfileDto));
+            }
+
             UserProfileDto profileDto = userService.getUserProfile();
-            return ResponseEntity.ok(ApiResponseDto.success(profileDto));
+            return ResponseEntity.ok()
+                    .eTag(profileDto.getEtag())
+                    .body(ApiResponseDto.success(profileDto));
         } catch (UserNotFoundException | ProfileNotFoundException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
@@ -39,22 +72,72 @@ public class UserController {
     }
 
     /**
-     * Update the current user's profile
+     * Update the current user's profile, optionally guarded by If-Match
      *
      * @param profileDto Profile data to update
-     * @return ApiResponseDto<UserProfileDto> Updated user profile data
+     * @param ifMatch ETag the client last saw, 412 is returned if the profile changed since
+     * @return ApiResponseDto<RawUserProfileDto> or ApiResponseDto<UserProfileDto> Updated user profile data
      */
     @PutMapping("/profile")
-    public ResponseEntity<ApiResponseDto<UserProfileDto>> updateUserProfile(@RequestBody UserProfileDto profileDto) {
+    public ResponseEntity<ApiResponseDto<?>> updateUserProfile(
+            @RequestBody RawUserProfileDto profileDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            UserProfileDto updatedProfile = userService.updateUserProfile(profileDto);
-            return ResponseEntity.ok(ApiResponseDto.success("Profile updated successfully", updatedProfile));
+            if (rawJson) {
+                RawUserProfileDto updatedRawProfile = userService.updateRawUserProfile(profileDto, ifMatch);
+                return ResponseEntity.ok()
+                        .eTag(updatedRawProfile.getEtag())
+                        .body(ApiResponseDto.success("Profile updated successfully", updatedRawProfile));
+            }
+
+            UserProfileDto updatedProfile = userService.updateUserProfile(toMapProfile(profileDto), ifMatch);
+            return ResponseEntity.ok()
+                    .eTag(updatedProfile.getEtag())
+                    .body(ApiResponseDto.success("Profile updated successfully", updatedProfile));
         } catch (UserNotFoundException | ProfileNotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponseDto.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Error updating user profile: {}", e.getMessage());
             return ResponseEntity.internalServerError()
                     .body(ApiResponseDto.error("Failed to update user profile"));
         }
     }
+
+    /**
+     * Partially update the current user's profile with a JSON Merge Patch (RFC 7396)
+     *
+     * @param patch Merge patch with optional profileData and settings members
+     * @param ifMatch ETag the client last saw, 412 is returned if the profile changed since
+     * @return 204 with the ETag of the new profile version
+     */
+    @PatchMapping(value = "/profile", consumes = "application/merge-patch+json")
+    public ResponseEntity<ApiResponseDto<?>> patchUserProfile(
+            @RequestBody JsonNode patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            String etag = userService.patchUserProfile(patch, ifMatch);
+            return ResponseEntity.noContent().eTag(etag).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponseDto.error(e.getMessage()));
+        } catch (UserNotFoundException | ProfileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponseDto.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error patching user profile: {}", e.getMessage());
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponseDto.error("Failed to update user profile"));
+        }
+    }
+
+    private UserProfileDto toMapProfile(RawUserProfileDto profileDto) throws JsonProcessingException {
+        return UserProfileDto.builder()
+                .profileData(profileDto.getProfileData() != null ? profileJson.readMap(profileDto.getProfileData()) : null)
+                .settings(profileDto.getSettings() != null ? profileJson.readMap(profileDto.getSettings()) : null)
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.fintegerllp.authapi.dto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of importing a single row of a bulk user import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowResultDto {
+
+    public enum Status {
+        CREATED,
+        SKIPPED,
+        FAILED
+    }
+
+    private long line;
+    private String email;
+    private Status status;
+    private Long userId;
+    private String error;
+}
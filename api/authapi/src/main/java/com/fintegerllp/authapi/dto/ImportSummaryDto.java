@@ -0,0 +1,22 @@
+package com.fintegerllp.authapi.dto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress and throughput report of a bulk user import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportSummaryDto {
+
+    private long total;
+    private long created;
+    private long skipped;
+    private long failed;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,30 @@
+package com.fintegerllp.authapi.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Reads a JSON object as its compact text. Tokens are streamed straight into
+ * the output, so the input is validated without building a Map or JsonNode.
+ */
+public class RawJsonDeserializer extends JsonDeserializer<String> {
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return context.reportInputMismatch(String.class, "Expected a JSON object");
+        }
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = parser.getCodec().getFactory().createGenerator(writer)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return writer.toString();
+    }
+}
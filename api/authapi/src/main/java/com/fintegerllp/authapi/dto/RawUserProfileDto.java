@@ -0,0 +1,35 @@
+package com.fintegerllp.authapi.dto;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * User profile carrying profile_data and settings as raw JSON text, written
+ * to the response as-is instead of being parsed into maps
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RawUserProfileDto {
+
+    private Long userId;
+
+    @JsonRawValue
+    @JsonDeserialize(using = RawJsonDeserializer.class)
+    private String profileData;
+
+    @JsonRawValue
+    @JsonDeserialize(using = RawJsonDeserializer.class)
+    private String settings;
+
+    /**
+     * Version of the profile, sent as the ETag header rather than in the body
+     */
+    @JsonIgnore
+    private String etag;
+}
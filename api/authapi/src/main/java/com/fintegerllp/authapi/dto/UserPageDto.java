@@ -0,0 +1,24 @@
+package com.fintegerllp.authapi.dto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user listing, newest first
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageDto {
+
+    private List<AdminUserDto> users;
+
+    /**
+     * Opaque cursor of the next page, null on the last page
+     */
+    private String nextCursor;
+}
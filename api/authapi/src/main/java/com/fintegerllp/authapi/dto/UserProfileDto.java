@@ -1,4 +1,5 @@
 package com.fintegerllp.authapi.dto;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,4 +18,10 @@ public class UserProfileDto {
     private Long userId;
     private Map<String, Object> profileData;
     private Map<String, Object> settings;
+
+    /**
+     * Version of the profile, sent as the ETag header rather than in the body
+     */
+    @JsonIgnore
+    private String etag;
 }
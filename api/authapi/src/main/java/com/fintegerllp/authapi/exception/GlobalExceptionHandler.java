@@ -10,6 +10,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 
 import java.util.Date;
 import java.util.HashMap;
@@ -40,11 +41,18 @@ public class GlobalExceptionHandler {
                 .body(ApiResponseDto.error(ex.getMessage()));
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiResponseDto<Object>> handlePreconditionFailedException(PreconditionFailedException ex) {
+        return ResponseEntity
+                .status(HttpStatus.PRECONDITION_FAILED)
+                .body(ApiResponseDto.error(ex.getMessage()));
+    }
+
     @ExceptionHandler(KeycloakIntegrationException.class)
     public ResponseEntity<ApiResponseDto<Object>> handleKeycloakIntegrationException(KeycloakIntegrationException ex) {
         log.error("Keycloak integration error: ", ex);
         return ResponseEntity
-                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
                 .body(ApiResponseDto.error("Authentication service error: " + ex.getMessage()));
     }
 
@@ -62,6 +70,12 @@ public class GlobalExceptionHandler {
                 .body(ApiResponseDto.error("Validation failed", errors));
     }
 
+    // The client went away, e.g. during a streamed export; there is no one to answer
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsableException(AsyncRequestNotUsableException ex, HttpServletRequest request) {
+        log.info("Client disconnected from {}: {}", request.getRequestURI(), ex.getMessage());
+    }
+
     // Keep only this Exception handler as it's more detailed
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleGlobalException(Exception ex, HttpServletRequest request) {
@@ -15,6 +15,7 @@ public class CorsHeaderInterceptor implements HandlerInterceptor {
         // Force-set the CORS headers after all controller processing
         response.setHeader("Access-Control-Allow-Origin", "http://localhost:3000");
         response.setHeader("Access-Control-Allow-Credentials", "true");
+        response.setHeader("Access-Control-Expose-Headers", "ETag");
 
         System.out.println("INTERCEPTOR: Headers set, Access-Control-Allow-Origin=" +
                 response.getHeader("Access-Control-Allow-Origin"));
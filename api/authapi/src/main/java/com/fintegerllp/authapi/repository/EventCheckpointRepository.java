@@ -0,0 +1,9 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fintegerllp.authapi.repository.model.EventCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EventCheckpointRepository extends JpaRepository<EventCheckpoint, String> {
+}
@@ -0,0 +1,9 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fintegerllp.authapi.repository.model.ReconciliationState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationStateRepository extends JpaRepository<ReconciliationState, String> {
+}
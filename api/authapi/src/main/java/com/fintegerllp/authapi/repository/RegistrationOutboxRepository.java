@@ -0,0 +1,17 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fintegerllp.authapi.repository.model.RegistrationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RegistrationOutboxRepository extends JpaRepository<RegistrationOutbox, Long> {
+
+    List<RegistrationOutbox> findByUpdatedAtBefore(LocalDateTime cutoff, Pageable pageable);
+
+    boolean existsByEmailIgnoreCase(String email);
+}
\ No newline at end of file
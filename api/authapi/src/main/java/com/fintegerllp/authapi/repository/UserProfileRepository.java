@@ -2,13 +2,30 @@ package com.fintegerllp.authapi.repository;
 
 
 import com.fintegerllp.authapi.repository.model.UserProfile;
+import com.fintegerllp.authapi.repository.projection.ProfileView;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
-public interface UserProfileRepository extends JpaRepository<UserProfile, Long> {
+public interface UserProfileRepository extends JpaRepository<UserProfile, Long>, UserProfileRepositoryCustom {
 
     Optional<UserProfile> findByUserId(Long userId);
+
+    @Query("select new com.fintegerllp.authapi.repository.projection.ProfileView(u.id, p.profileData, p.settings, p.updatedAt) "
+            + "from UserProfile p join p.user u where u.keycloakId = :keycloakId")
+    Optional<ProfileView> findViewByKeycloakId(@Param("keycloakId") String keycloakId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from UserProfile p where p.user.id = :userId")
+    Optional<UserProfile> findByUserIdForUpdate(@Param("userId") Long userId);
+
+    @Query("select p.updatedAt from UserProfile p where p.user.id = :userId")
+    Optional<LocalDateTime> findUpdatedAtByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserProfileRepositoryCustom {
+
+    /**
+     * Applies JSON Merge Patch (RFC 7396) documents to the jsonb columns in a single UPDATE
+     *
+     * @param userId User ID
+     * @param profileDataPatch Patch for profile_data, JSON null to reset it to {}, null to leave it unchanged
+     * @param settingsPatch Patch for settings, JSON null to reset it to {}, null to leave it unchanged
+     * @param updatedAt New update timestamp
+     * @param expectedUpdatedAt Only update if the current timestamp is one of these, null for any
+     * @return int number of updated rows
+     */
+    int mergePatch(Long userId, JsonNode profileDataPatch, JsonNode settingsPatch,
+                   LocalDateTime updatedAt, List<LocalDateTime> expectedUpdatedAt);
+}
@@ -0,0 +1,163 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates JSON Merge Patch documents into jsonb operator expressions so the
+ * patch is applied by Postgres without reading the profile first:
+ * null members become {@code -}, nested objects become {@code jsonb_set}
+ * over the recursively merged sub-object and everything else is merged
+ * with {@code ||}.
+ */
+public class UserProfileRepositoryImpl implements UserProfileRepositoryCustom {
+
+    private static final int MAX_DEPTH = 32;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int mergePatch(Long userId, JsonNode profileDataPatch, JsonNode settingsPatch,
+                          LocalDateTime updatedAt, List<LocalDateTime> expectedUpdatedAt) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("update user_profiles set ");
+
+        if (profileDataPatch != null) {
+            sql.append("profile_data = ").append(columnExpression("profile_data", profileDataPatch, params)).append(", ");
+        }
+        if (settingsPatch != null) {
+            sql.append("settings = ").append(columnExpression("settings", settingsPatch, params)).append(", ");
+        }
+        sql.append("updated_at = ").append(param(updatedAt, params));
+        sql.append(" where user_id = ").append(param(userId, params));
+
+        if (expectedUpdatedAt != null) {
+            List<String> placeholders = new ArrayList<>();
+            for (LocalDateTime expected : expectedUpdatedAt) {
+                placeholders.add(param(expected, params));
+            }
+            sql.append(" and updated_at in (").append(String.join(", ", placeholders)).append(")");
+        }
+
+        sql.append(" returning id");
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+        // Run as a query rather than executeUpdate, which would evict every cached profile,
+        // and evict only the patched row
+        List<?> ids = query.getResultList();
+        evictAfterCompletion(ids);
+        return ids.size();
+    }
+
+    /**
+     * Evicts profiles from the second-level cache now and again once the transaction has ended,
+     * so a concurrent read cannot put the old state back
+     *
+     * @param ids Profile IDs
+     */
+    private void evictAfterCompletion(List<?> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        ids.forEach(id -> cache.evict(UserProfile.class, ((Number) id).longValue()));
+        if (!ids.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(UserProfile.class, ((Number) id).longValue()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds the new value of a patched column
+     *
+     * @param column Column name
+     * @param patch Patch for the column, JSON null to reset it
+     * @param params Collected query parameters
+     * @return String SQL expression
+     */
+    private String columnExpression(String column, JsonNode patch, List<Object> params) {
+        // Removing a column resets it to an empty object, the columns are never JSON null
+        return patch.isNull() ? "cast('{}' as jsonb)" : mergeExpression(column, List.of(), patch, params);
+    }
+
+    /**
+     * Builds the SQL expression of a merge patch applied to a jsonb column
+     *
+     * @param column Column name
+     * @param path Path of the patched member inside the column
+     * @param patch Patch for that member
+     * @param params Collected query parameters
+     * @return String SQL expression
+     */
+    private String mergeExpression(String column, List<String> path, JsonNode patch, List<Object> params) {
+        if (path.size() > MAX_DEPTH) {
+            throw new IllegalArgumentException("Merge patch is nested too deeply");
+        }
+        if (!patch.isObject()) {
+            // Non-object patches replace the target
+            return jsonParam(patch, params);
+        }
+
+        // Read the target from the column itself so the expression stays linear in the depth
+        String target = path.isEmpty() ? column : "(" + column + " #> " + textArray(path, params) + ")";
+        String result = "(case when jsonb_typeof(" + target + ") = 'object' then " + target + " else cast('{}' as jsonb) end)";
+
+        ObjectNode replacements = JsonNodeFactory.instance.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                result = "(" + result + " - cast(" + param(field.getKey(), params) + " as text))";
+            } else if (value.isObject()) {
+                List<String> childPath = new ArrayList<>(path);
+                childPath.add(field.getKey());
+                result = "jsonb_set(" + result + ", " + textArray(List.of(field.getKey()), params) + ", "
+                        + mergeExpression(column, childPath, value, params) + ", true)";
+            } else {
+                replacements.set(field.getKey(), value);
+            }
+        }
+
+        if (!replacements.isEmpty()) {
+            result = "(" + result + " || " + jsonParam(replacements, params) + ")";
+        }
+        return result;
+    }
+
+    private String textArray(List<String> elements, List<Object> params) {
+        List<String> placeholders = new ArrayList<>();
+        for (String element : elements) {
+            placeholders.add(param(element, params));
+        }
+        return "cast(array[" + String.join(", ", placeholders) + "] as text[])";
+    }
+
+    private String jsonParam(JsonNode value, List<Object> params) {
+        return "cast(" + param(value.toString(), params) + " as jsonb)";
+    }
+
+    private String param(Object value, List<Object> params) {
+        params.add(value);
+        return "?" + params.size();
+    }
+}
@@ -1,19 +1,55 @@
 package com.fintegerllp.authapi.repository;
 
 import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.projection.UserExportRow;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-
-    Optional<User> findByKeycloakId(String keycloakId);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
 
     boolean existsByKeycloakId(String keycloakId);
+
+    boolean existsByEmailIgnoreCase(String email);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    List<User> findAllByKeycloakIdIn(Collection<String> keycloakIds);
+
+    @Query("select u.keycloakId from User u where u.keycloakId in :keycloakIds")
+    List<String> findExistingKeycloakIds(@Param("keycloakIds") Collection<String> keycloakIds);
+
+    @Query("select new com.fintegerllp.authapi.repository.projection.UserSummary(u.id, u.keycloakId, u.name, u.email) "
+            + "from User u where u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesAfter(@Param("afterId") long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.email from User u")
+    Stream<String> streamAllEmails();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.fintegerllp.authapi.repository.projection.UserExportRow("
+            + "u.id, u.keycloakId, u.name, u.email, u.createdAt, u.updatedAt, p.profileData, p.settings) "
+            + "from User u left join UserProfile p on p.user = u order by u.id")
+    Stream<UserExportRow> streamExportRows();
 }
\ No newline at end of file
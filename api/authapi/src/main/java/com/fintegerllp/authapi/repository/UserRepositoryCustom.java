@@ -0,0 +1,41 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.projection.UserListItem;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Loads a user by its Keycloak ID natural id, served from the second-level cache when enabled
+     *
+     * @param keycloakId Keycloak user ID
+     * @return Optional<User> user entity
+     */
+    Optional<User> findByKeycloakId(String keycloakId);
+
+    /**
+     * Lists users newest first, seeking past the last row of the previous page instead of using OFFSET
+     *
+     * @param criteria Filters
+     * @param afterCreatedAt Creation timestamp of the last row seen, null for the first page
+     * @param afterId ID of the last row seen, null for the first page
+     * @param limit Maximum number of rows
+     * @return List<UserListItem> matching users ordered by created_at and id descending
+     */
+    List<UserListItem> search(UserSearchCriteria criteria, LocalDateTime afterCreatedAt, Long afterId, int limit);
+
+    /**
+     * Inserts a user with an empty profile unless a row with the same Keycloak ID or email already exists
+     *
+     * @param keycloakId Keycloak user ID
+     * @param name Name
+     * @param email Email
+     * @param now Creation timestamp
+     * @return int number of users inserted, 0 on conflict
+     */
+    int insertIfAbsent(String keycloakId, String name, String email, LocalDateTime now);
+}
\ No newline at end of file
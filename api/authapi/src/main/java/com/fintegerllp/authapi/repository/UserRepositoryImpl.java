@@ -0,0 +1,114 @@
+package com.fintegerllp.authapi.repository;
+
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.projection.UserListItem;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Natural id lookups, which a derived query would bypass: Hibernate resolves
+ * the natural id to the primary key and the entity through their caches
+ * before falling back to a select. Also builds the admin search, whose
+ * filters are all optional, and the conflict-tolerant insert used for
+ * just-in-time provisioning.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Unlike the derived queries, fragment methods get no transaction by default
+    // and the unwrapped session would be closed before the entity is loaded
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByKeycloakId(String keycloakId) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(User.class)
+                .loadOptional(keycloakId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserListItem> search(UserSearchCriteria criteria, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("select new com.fintegerllp.authapi.repository.projection.UserListItem("
+                + "u.id, u.keycloakId, u.name, u.email, u.createdAt, u.updatedAt) from User u where 1 = 1");
+        Map<String, Object> params = new LinkedHashMap<>();
+
+        // Prefix matches use the lower(...) text_pattern_ops indexes from db/user-search-indexes.sql
+        if (criteria.emailPrefix() != null) {
+            jpql.append(" and lower(u.email) like :emailPrefix escape '\\'");
+            params.put("emailPrefix", likePrefix(criteria.emailPrefix()));
+        }
+        if (criteria.namePrefix() != null) {
+            jpql.append(" and lower(u.name) like :namePrefix escape '\\'");
+            params.put("namePrefix", likePrefix(criteria.namePrefix()));
+        }
+        if (criteria.createdFrom() != null) {
+            jpql.append(" and u.createdAt >= :createdFrom");
+            params.put("createdFrom", criteria.createdFrom());
+        }
+        if (criteria.createdTo() != null) {
+            jpql.append(" and u.createdAt < :createdTo");
+            params.put("createdTo", criteria.createdTo());
+        }
+        if (criteria.updatedFrom() != null) {
+            jpql.append(" and u.updatedAt >= :updatedFrom");
+            params.put("updatedFrom", criteria.updatedFrom());
+        }
+        if (criteria.updatedTo() != null) {
+            jpql.append(" and u.updatedAt < :updatedTo");
+            params.put("updatedTo", criteria.updatedTo());
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            // Row comparison, so Postgres seeks straight into the (created_at, id) index
+            jpql.append(" and (u.createdAt, u.id) < (:afterCreatedAt, :afterId)");
+            params.put("afterCreatedAt", afterCreatedAt);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" order by u.createdAt desc, u.id desc");
+
+        TypedQuery<UserListItem> query = entityManager.createQuery(jpql.toString(), UserListItem.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int insertIfAbsent(String keycloakId, String name, String email, LocalDateTime now) {
+        // Each nextval reserves a whole pooled block, so the value itself never
+        // collides with IDs Hibernate hands out; the rest of the block is skipped
+        Query query = entityManager.createNativeQuery("with inserted as ("
+                + "insert into users (id, keycloak_id, name, email, created_at, updated_at) "
+                + "values (nextval('users_seq'), :keycloakId, :name, :email, :now, :now) "
+                + "on conflict do nothing returning id) "
+                + "insert into user_profiles (id, user_id, profile_data, settings, created_at, updated_at) "
+                + "select nextval('user_profiles_seq'), id, cast('{}' as jsonb), cast('{}' as jsonb), :now, :now "
+                + "from inserted returning user_id");
+        query.setParameter("keycloakId", keycloakId);
+        query.setParameter("name", name);
+        query.setParameter("email", email);
+        query.setParameter("now", now);
+        // Run as a query rather than executeUpdate, which would evict the whole users and
+        // user-profiles cache regions; new rows cannot be stale in any cache
+        return query.getResultList().size();
+    }
+
+    private static String likePrefix(String prefix) {
+        String escaped = prefix.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return escaped + "%";
+    }
+}
\ No newline at end of file
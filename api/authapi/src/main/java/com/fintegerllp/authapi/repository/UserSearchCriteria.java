@@ -0,0 +1,15 @@
+package com.fintegerllp.authapi.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters of an admin user listing, each one optional. Prefixes are matched
+ * case-insensitively, ranges include their start and exclude their end.
+ */
+public record UserSearchCriteria(String emailPrefix,
+                                 String namePrefix,
+                                 LocalDateTime createdFrom,
+                                 LocalDateTime createdTo,
+                                 LocalDateTime updatedFrom,
+                                 LocalDateTime updatedTo) {
+}
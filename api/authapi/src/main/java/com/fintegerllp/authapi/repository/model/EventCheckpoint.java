@@ -0,0 +1,36 @@
+package com.fintegerllp.authapi.repository.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Time of the newest Keycloak event applied from one event source
+ */
+@Entity
+@Table(name = "event_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventCheckpoint {
+
+    @Id
+    private String source;
+
+    /**
+     * Keycloak event time in epoch milliseconds
+     */
+    private long lastEventTime;
+
+    @Version
+    private Long version;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,45 @@
+package com.fintegerllp.authapi.repository.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the Keycloak/users reconciliation, so each run continues where
+ * the last one stopped. The row doubles as a lease: only the instance that set
+ * lockedUntil runs until it is cleared or has passed.
+ */
+@Entity
+@Table(name = "reconciliation_state")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationState {
+
+    @Id
+    private String name;
+
+    /**
+     * Offset of the next Keycloak user page
+     */
+    private int keycloakOffset;
+
+    /**
+     * ID of the last local user checked
+     */
+    private long lastUserId;
+
+    private LocalDateTime lockedUntil;
+
+    @Version
+    private Long version;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
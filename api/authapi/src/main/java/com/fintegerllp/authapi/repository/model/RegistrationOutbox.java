@@ -0,0 +1,57 @@
+package com.fintegerllp.authapi.repository.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * In-flight registration. A row exists only while a registration is between
+ * the Keycloak call and the local users/user_profiles insert.
+ */
+@Entity
+@Table(name = "registration_outbox")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationOutbox {
+
+    public enum Status {
+        PENDING,
+        KEYCLOAK_CREATED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String email;
+
+    @Column(nullable = false)
+    private String name;
+
+    private String keycloakId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private int attempts;
+
+    @Version
+    private Long version;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -1,17 +1,32 @@
 package com.fintegerllp.authapi.repository.model;
 
+import com.fintegerllp.authapi.cache.EmailBloomFilterListener;
+import com.fintegerllp.authapi.cache.UserCacheEvictionListener;
+import com.fintegerllp.authapi.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // Keyset pagination of the admin listing seeks on (created_at, id)
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_users_updated_at", columnList = "updated_at")
+})
+@EntityListeners({UserCacheEvictionListener.class, EmailBloomFilterListener.class})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USERS_REGION)
+@NaturalIdCache(region = HibernateCacheConfig.USERS_BY_KEYCLOAK_ID_REGION)
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,9 +34,11 @@ import java.time.LocalDateTime;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String keycloakId;
 
@@ -37,7 +54,4 @@ public class User {
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
-
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
-    private UserProfile profile;
 }
\ No newline at end of file
@@ -1,13 +1,18 @@
 package com.fintegerllp.authapi.repository.model;
 
+import com.fintegerllp.authapi.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.annotations.Type;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -15,6 +20,8 @@ import java.util.Map;
 
 @Entity
 @Table(name = "user_profiles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_PROFILES_REGION)
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,16 +29,21 @@ import java.util.Map;
 public class UserProfile {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_profiles_seq")
+    @SequenceGenerator(name = "user_profiles_seq", sequenceName = "user_profiles_seq", allocationSize = 50)
     private Long id;
 
-    @OneToOne
+    // Only mapped on this side: an inverse User.profile could not be lazy without bytecode
+    // enhancement, so every user load, even from the second-level cache, would select its profile
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "profile_data", columnDefinition = "jsonb")
     private String profileData;
 
+    @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "settings", columnDefinition = "jsonb")
     private String settings;
 
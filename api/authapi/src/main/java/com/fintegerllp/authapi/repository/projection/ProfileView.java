@@ -0,0 +1,9 @@
+package com.fintegerllp.authapi.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's profile columns, read together with the user ID in one keyed query.
+ */
+public record ProfileView(Long userId, String profileData, String settings, LocalDateTime updatedAt) {
+}
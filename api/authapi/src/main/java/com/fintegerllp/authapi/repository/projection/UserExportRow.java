@@ -0,0 +1,12 @@
+package com.fintegerllp.authapi.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user with its profile JSON as exported. Not a managed entity, so streamed
+ * rows do not pile up in the persistence context.
+ */
+public record UserExportRow(Long id, String keycloakId, String name, String email,
+                            LocalDateTime createdAt, LocalDateTime updatedAt,
+                            String profileData, String settings) {
+}
@@ -0,0 +1,10 @@
+package com.fintegerllp.authapi.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columns of the users table shown in admin listings.
+ */
+public record UserListItem(Long id, String keycloakId, String name, String email,
+                           LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
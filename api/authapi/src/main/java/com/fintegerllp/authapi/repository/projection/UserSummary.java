@@ -0,0 +1,14 @@
+package com.fintegerllp.authapi.repository.projection;
+
+import com.fintegerllp.authapi.repository.model.User;
+
+/**
+ * Columns of the users table needed on the authenticated request path,
+ * read without touching the user_profiles row.
+ */
+public record UserSummary(Long id, String keycloakId, String name, String email) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getKeycloakId(), user.getName(), user.getEmail());
+    }
+}
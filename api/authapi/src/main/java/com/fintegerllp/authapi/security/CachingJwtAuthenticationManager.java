@@ -0,0 +1,107 @@
+package com.fintegerllp.authapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Authentication manager for bearer JWTs that remembers successful
+ * authentications, so a token seen again skips parsing, signature
+ * verification, claim validation and authority conversion.
+ * Entries are keyed by the SHA-256 of the token and never outlive its exp claim.
+ */
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+
+    private final AuthenticationManager delegate;
+    private final Cache<String, JwtAuthenticationToken> cache;
+
+    public CachingJwtAuthenticationManager(AuthenticationManager delegate, MeterRegistry meterRegistry,
+                                           long maxSize, Duration maxTtl) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(maxTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.authentications");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return delegate.authenticate(authentication);
+        }
+
+        String key = sha256(bearer.getToken());
+        JwtAuthenticationToken cached = cache.getIfPresent(key);
+        if (cached != null && isUnexpired(cached.getToken())) {
+            // Fresh token object so request-specific details are never shared
+            JwtAuthenticationToken result = new JwtAuthenticationToken(
+                    cached.getToken(), cached.getAuthorities(), cached.getName());
+            result.setDetails(bearer.getDetails());
+            return result;
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result instanceof JwtAuthenticationToken jwtAuthentication && jwtAuthentication.getToken().getExpiresAt() != null) {
+            cache.put(key, jwtAuthentication);
+        }
+        return result;
+    }
+
+    private boolean isUnexpired(Jwt jwt) {
+        return jwt.getExpiresAt() != null && Instant.now().isBefore(jwt.getExpiresAt());
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Expires an entry at the token's exp, capped at the configured maximum TTL
+     */
+    private static class TokenExpiry implements Expiry<String, JwtAuthenticationToken> {
+
+        private final long maxTtlNanos;
+
+        TokenExpiry(Duration maxTtl) {
+            this.maxTtlNanos = maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, JwtAuthenticationToken value, long currentTime) {
+            Duration untilExpiry = Duration.between(Instant.now(), value.getToken().getExpiresAt());
+            return Math.max(0, Math.min(maxTtlNanos, untilExpiry.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
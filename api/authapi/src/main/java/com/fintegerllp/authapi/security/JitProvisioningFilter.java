@@ -0,0 +1,43 @@
+package com.fintegerllp.authapi.security;
+
+import com.fintegerllp.authapi.service.UserProvisioner;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Provisions the users row of a JWT-authenticated subject before the request
+ * reaches the controllers. Failures are logged and the request continues, so
+ * the endpoints report a missing user as they do without provisioning.
+ */
+@Slf4j
+public class JitProvisioningFilter extends OncePerRequestFilter {
+
+    private final UserProvisioner userProvisioner;
+
+    public JitProvisioningFilter(UserProvisioner userProvisioner) {
+        this.userProvisioner = userProvisioner;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof JwtAuthenticationToken jwtAuthentication) {
+            try {
+                userProvisioner.provision(jwtAuthentication.getToken());
+            } catch (RuntimeException e) {
+                log.warn("Provisioning user {} failed: {}", jwtAuthentication.getName(), e.getMessage());
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
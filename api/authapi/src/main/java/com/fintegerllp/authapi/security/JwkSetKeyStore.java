@@ -0,0 +1,154 @@
+package com.fintegerllp.authapi.security;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.Resource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JWKS key source for the resource server. Keys are loaded at startup, refreshed
+ * in the background and the last good key set keeps being served while Keycloak
+ * is unreachable. A request only triggers a fetch when it carries an unknown kid,
+ * and concurrent fetches are collapsed into one.
+ */
+@Component
+@Slf4j
+public class JwkSetKeyStore implements JWKSource<SecurityContext>, InitializingBean {
+
+    private final URL jwkSetUrl;
+    private final DefaultResourceRetriever retriever;
+    private final Duration minOnDemandInterval;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+    private volatile JWKSet keys = new JWKSet();
+    private volatile Instant lastSuccess = Instant.EPOCH;
+    private volatile Instant lastAttempt = Instant.EPOCH;
+
+    private final Counter onDemandRefreshes;
+
+    public JwkSetKeyStore(MeterRegistry meterRegistry,
+                          @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") URL jwkSetUrl,
+                          @Value("${app.security.jwks.connect-timeout-ms:2000}") int connectTimeoutMs,
+                          @Value("${app.security.jwks.read-timeout-ms:2000}") int readTimeoutMs,
+                          @Value("${app.security.jwks.min-on-demand-interval-ms:10000}") long minOnDemandIntervalMs) {
+        this.meterRegistry = meterRegistry;
+        this.jwkSetUrl = jwkSetUrl;
+        this.retriever = new DefaultResourceRetriever(connectTimeoutMs, readTimeoutMs, 512 * 1024);
+        this.minOnDemandInterval = Duration.ofMillis(minOnDemandIntervalMs);
+
+        this.onDemandRefreshes = Counter.builder("jwks.refresh.on-demand")
+                .description("JWKS fetches triggered by an unknown kid")
+                .register(meterRegistry);
+        Gauge.builder("jwks.staleness", this, store -> Duration.between(store.lastSuccess, Instant.now()).toMillis() / 1000.0)
+                .description("Seconds since the key set was last fetched successfully")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("jwks.keys", this, store -> store.keys.getKeys().size())
+                .description("Number of keys in the current key set")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the key set during context startup, before the application reports ready
+     */
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            refresh().join();
+        } catch (CompletionException e) {
+            log.warn("Initial JWKS fetch from {} failed, keys will be fetched on demand: {}",
+                    jwkSetUrl, e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Refreshes the key set in the background
+     */
+    @Scheduled(initialDelayString = "${app.security.jwks.refresh-interval-ms:300000}",
+            fixedDelayString = "${app.security.jwks.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            refresh().join();
+        } catch (CompletionException e) {
+            log.warn("JWKS refresh failed, serving key set from {}: {}", lastSuccess, e.getCause().getMessage());
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = jwkSelector.select(keys);
+        // Matchers built from a JWS header list the kid in keyIDs, hasKeyID() only reports a key with a kid
+        Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+        if (!matches.isEmpty() || keyIds == null || keyIds.isEmpty()) {
+            return matches;
+        }
+
+        // Unknown kid, most likely a key rotation. Rate-limited so random kids cannot hammer Keycloak
+        if (Duration.between(lastAttempt, Instant.now()).compareTo(minOnDemandInterval) < 0 && inFlight.get() == null) {
+            return matches;
+        }
+        onDemandRefreshes.increment();
+        try {
+            return jwkSelector.select(refresh().join());
+        } catch (CompletionException e) {
+            throw new KeySourceException("Couldn't retrieve JWKS: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Fetches the key set, joining a fetch already in progress
+     *
+     * @return CompletableFuture<JWKSet> fetched key set
+     */
+    private CompletableFuture<JWKSet> refresh() {
+        CompletableFuture<JWKSet> future = new CompletableFuture<>();
+        CompletableFuture<JWKSet> existing = inFlight.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        lastAttempt = Instant.now();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            Resource resource = retriever.retrieveResource(jwkSetUrl);
+            JWKSet fetched = JWKSet.parse(resource.getContent());
+            keys = fetched;
+            lastSuccess = Instant.now();
+            future.complete(fetched);
+        } catch (Exception e) {
+            outcome = "error";
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.set(null);
+            sample.stop(Timer.builder("jwks.refresh")
+                    .description("JWKS fetch latency")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+        return future;
+    }
+}
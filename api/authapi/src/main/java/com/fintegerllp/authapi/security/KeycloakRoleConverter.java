@@ -0,0 +1,79 @@
+package com.fintegerllp.authapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps Keycloak roles to authorities. Realm roles ({@code realm_access.roles}),
+ * roles of this client ({@code resource_access.<keycloak.resource>.roles}) and
+ * the flat {@code roles} claim are merged and prefixed with {@code ROLE_}.
+ * Users share a handful of role combinations, so each distinct combination is
+ * converted once and the same immutable authority set is handed out afterwards.
+ */
+@Component
+public class KeycloakRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final String clientId;
+    private final Cache<List<Object>, Set<GrantedAuthority>> authoritySets;
+    private final Cache<String, GrantedAuthority> authorities;
+
+    public KeycloakRoleConverter(@Value("${keycloak.resource}") String clientId,
+                                 @Value("${app.security.role-sets.max-size:1000}") long maxRoleSets) {
+        this.clientId = clientId;
+        this.authoritySets = Caffeine.newBuilder().maximumSize(maxRoleSets).build();
+        this.authorities = Caffeine.newBuilder().maximumSize(maxRoleSets * 10).build();
+    }
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Object realmRoles = roles(jwt.getClaim("realm_access"));
+        Object clientRoles = roles(clientAccess(jwt.getClaim("resource_access")));
+        Object flatRoles = jwt.getClaim("roles");
+
+        if (realmRoles == null && clientRoles == null && flatRoles == null) {
+            return Collections.emptySet();
+        }
+
+        // The claim lists compare by content, so equal role combinations share one entry
+        List<Object> key = Collections.unmodifiableList(Arrays.asList(realmRoles, clientRoles, flatRoles));
+        return authoritySets.get(key, k -> toAuthorities(realmRoles, clientRoles, flatRoles));
+    }
+
+    private Set<GrantedAuthority> toAuthorities(Object... roleClaims) {
+        Set<GrantedAuthority> result = new LinkedHashSet<>();
+        for (Object claim : roleClaims) {
+            if (claim instanceof Collection<?> roles) {
+                for (Object role : roles) {
+                    if (role != null) {
+                        result.add(authorities.get(ROLE_PREFIX + role, SimpleGrantedAuthority::new));
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private Object clientAccess(Object resourceAccess) {
+        return resourceAccess instanceof Map<?, ?> map ? map.get(clientId) : null;
+    }
+
+    private Object roles(Object access) {
+        return access instanceof Map<?, ?> map ? map.get("roles") : null;
+    }
+}
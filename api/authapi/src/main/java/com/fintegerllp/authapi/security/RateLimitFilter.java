@@ -0,0 +1,246 @@
+package com.fintegerllp.authapi.security;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.dto.ApiResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Throttles the public endpoints before they reach the security chain, with
+ * token buckets per client IP and per domain of the email in the JSON body.
+ * Rejected requests get 429 with Retry-After. Bodies of endpoints limited by
+ * email domain are read in full to find the email, so bodies larger than
+ * max-body-bytes are refused with 413 rather than let through unlimited.
+ * <p>
+ * The client IP is the remote address; behind a proxy, set
+ * server.forward-headers-strategy so it comes from X-Forwarded-For.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String IP = "ip";
+    private static final String EMAIL_DOMAIN = "email-domain";
+
+    private final Map<String, EndpointLimiter> limitersByPath = new HashMap<>();
+    private final int maxBodyBytes;
+    private final ObjectMapper objectMapper;
+
+    private record EndpointLimiter(RateLimiter ip, RateLimiter emailDomain,
+                                   Counter ipRejected, Counter emailDomainRejected) {
+    }
+
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.maxBodyBytes = properties.maxBodyBytes();
+        this.objectMapper = objectMapper;
+        properties.endpoints().forEach((name, endpoint) -> {
+            boolean ip = endpoint.ip() != null;
+            boolean emailDomain = endpoint.emailDomain() != null;
+            limitersByPath.put(endpoint.path(), new EndpointLimiter(
+                    ip ? new RateLimiter(endpoint.ip(), properties.maxKeys()) : null,
+                    emailDomain ? new RateLimiter(endpoint.emailDomain(), properties.maxKeys()) : null,
+                    ip ? rejected(meterRegistry, name, IP) : null,
+                    emailDomain ? rejected(meterRegistry, name, EMAIL_DOMAIN) : null));
+        });
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !limitersByPath.containsKey(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointLimiter limiter = limitersByPath.get(path(request));
+
+        if (limiter.ip() != null) {
+            Duration wait = limiter.ip().tryAcquire(request.getRemoteAddr());
+            if (!wait.isZero()) {
+                limiter.ipRejected().increment();
+                reject(response, wait);
+                return;
+            }
+        }
+
+        if (limiter.emailDomain() != null && "POST".equals(request.getMethod())) {
+            BufferedBodyRequest buffered = request.getContentLengthLong() > maxBodyBytes
+                    ? null : BufferedBodyRequest.read(request, maxBodyBytes);
+            if (buffered == null) {
+                error(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large");
+                return;
+            }
+            String domain = emailDomain(buffered);
+            if (domain != null) {
+                Duration wait = limiter.emailDomain().tryAcquire(domain);
+                if (!wait.isZero()) {
+                    limiter.emailDomainRejected().increment();
+                    reject(response, wait);
+                    return;
+                }
+            }
+            request = buffered;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Gets the domain of the top-level email member of a JSON body
+     *
+     * @param request Request with the body buffered
+     * @return String lower-case domain, null if the body has none
+     */
+    private String emailDomain(BufferedBodyRequest request) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("email".equals(field) && value == JsonToken.VALUE_STRING) {
+                    String email = parser.getText().trim();
+                    int at = email.lastIndexOf('@');
+                    return at < 0 || at == email.length() - 1 ? null : email.substring(at + 1).toLowerCase(Locale.ROOT);
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Malformed bodies are left to the controller
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, Duration wait) throws IOException {
+        // Whole seconds, rounded up
+        long seconds = Math.max(1, (wait.toMillis() + 999) / 1000);
+        response.setHeader("Retry-After", Long.toString(seconds));
+        error(response, HttpStatus.TOO_MANY_REQUESTS, "Too many requests");
+    }
+
+    private void error(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiResponseDto.error(message));
+    }
+
+    private static String path(HttpServletRequest request) {
+        // Decoded and without ;-parameters, so an encoded path is limited like the path it resolves to
+        return UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String endpoint, String limit) {
+        return Counter.builder("http.rate-limit.rejected")
+                .description("Requests rejected by the rate limit")
+                .tag("endpoint", endpoint)
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Request whose body is read up front and replayed to the rest of the chain
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private final ServletInputStream in;
+
+        private BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+            this.in = new ReplayInputStream(new ByteArrayInputStream(body));
+        }
+
+        /**
+         * Reads the whole body of a request
+         *
+         * @param request Request
+         * @param maxBytes Largest body accepted
+         * @return BufferedBodyRequest request replaying the body, null if the body is larger than maxBytes
+         */
+        static BufferedBodyRequest read(HttpServletRequest request, int maxBytes) throws IOException {
+            // One byte more than allowed tells a body of exactly maxBytes from a longer one
+            byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+            return body.length > maxBytes ? null : new BufferedBodyRequest(request, body);
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(in,
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+    }
+
+    private static class ReplayInputStream extends ServletInputStream {
+
+        private final InputStream in;
+        private boolean finished;
+
+        ReplayInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            finished = b < 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            finished = n < 0;
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new IllegalStateException("The body was already read by the rate limit filter, "
+                    + "non-blocking reads are not supported");
+        }
+    }
+}
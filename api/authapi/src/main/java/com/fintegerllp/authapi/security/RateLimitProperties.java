@@ -0,0 +1,36 @@
+package com.fintegerllp.authapi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Rate limits of the public endpoints, bound from app.rate-limit
+ *
+ * @param maxKeys Maximum number of clients and email domains tracked at once
+ * @param maxBodyBytes Largest request body accepted by endpoints limited by email domain
+ * @param endpoints Limits by endpoint name
+ */
+@ConfigurationProperties("app.rate-limit")
+public record RateLimitProperties(long maxKeys, int maxBodyBytes, Map<String, Endpoint> endpoints) {
+
+    /**
+     * Limits of one endpoint
+     *
+     * @param path Path below the context path
+     * @param ip Limit per client IP, null for none
+     * @param emailDomain Limit per domain of the email in the JSON body, null for none
+     */
+    public record Endpoint(String path, Limit ip, Limit emailDomain) {
+    }
+
+    /**
+     * Token bucket holding up to capacity requests, refilled evenly over the period
+     *
+     * @param capacity Requests allowed in a burst
+     * @param period Time to refill an empty bucket
+     */
+    public record Limit(int capacity, Duration period) {
+    }
+}
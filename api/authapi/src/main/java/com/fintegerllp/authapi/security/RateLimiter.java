@@ -0,0 +1,55 @@
+package com.fintegerllp.authapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets keyed by client, kept as the generic cell rate algorithm: each
+ * bucket is a single theoretical arrival time, advanced by one emission
+ * interval per request with a compare-and-set, so callers never lock.
+ * <p>
+ * Buckets idle for a full period would be full again, so they are evicted
+ * after that long without losing anything; the store is also bounded, and a
+ * bucket evicted early simply starts full.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(RateLimitProperties.Limit limit, long maxKeys) {
+        this.burstNanos = limit.period().toNanos();
+        this.intervalNanos = Math.max(1, burstNanos / limit.capacity());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(limit.period())
+                .build();
+    }
+
+    /**
+     * Takes a token from the key's bucket
+     *
+     * @param key Client key
+     * @return Duration zero if allowed, otherwise the time until a token is available
+     */
+    public Duration tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0 ? arrival : now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return Duration.ofNanos(excess);
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.ws.rs.ClientErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resilience policy for Keycloak admin calls. Every call runs under its own
+ * time limit, behind a circuit breaker, inside a bulkhead shared by all
+ * operations; idempotent reads are additionally retried with jittered backoff.
+ * Calls the policy rejects fail fast with {@link KeycloakIntegrationException}.
+ * A call abandoned by its time limit is interrupted and keeps its bulkhead
+ * permit until it actually returns, so the bulkhead bounds the calls in flight.
+ * Every operation is timed as keycloak.admin.requests with an outcome tag.
+ * Limits are configured under resilience4j.* in application.yml.
+ */
+@Component
+@Slf4j
+public class KeycloakCallPolicy {
+
+    private static final String INSTANCE = "keycloak";
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Retry readRetry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    private final MeterRegistry meterRegistry;
+    private final SimpleAsyncTaskExecutor executor;
+    private final Map<String, OperationTimers> operationTimers = new ConcurrentHashMap<>();
+
+    public KeycloakCallPolicy(CircuitBreakerRegistry circuitBreakerRegistry,
+                              BulkheadRegistry bulkheadRegistry,
+                              RetryRegistry retryRegistry,
+                              TimeLimiterRegistry timeLimiterRegistry,
+                              MeterRegistry meterRegistry,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(INSTANCE);
+        this.readRetry = retryRegistry.retry(INSTANCE + "-read");
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.meterRegistry = meterRegistry;
+
+        // Calls run on their own thread so the time limit can abandon them; the bulkhead permits they hold bound how many
+        this.executor = new SimpleAsyncTaskExecutor("keycloak-call-");
+        this.executor.setDaemon(true);
+        if (virtualThreads) {
+            this.executor.setVirtualThreads(true);
+        }
+
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Keycloak circuit breaker {}", event.getStateTransition());
+            Counter.builder("keycloak.circuit.transitions")
+                    .description("Keycloak circuit breaker state transitions")
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+    }
+
+    /**
+     * Runs an idempotent read, retrying transient failures
+     *
+     * @param operation Operation name, selects the time limit
+     * @param call Keycloak call
+     * @return T call result
+     */
+    public <T> T read(String operation, Callable<T> call) throws Exception {
+        return execute(operation, Retry.decorateCallable(readRetry, guarded(operation, call)));
+    }
+
+    /**
+     * Runs a call that is not safe to repeat
+     *
+     * @param operation Operation name, selects the time limit
+     * @param call Keycloak call
+     * @return T call result
+     */
+    public <T> T write(String operation, Callable<T> call) throws Exception {
+        return execute(operation, guarded(operation, call));
+    }
+
+    /**
+     * Tells whether a call the policy failed was turned away before reaching Keycloak
+     *
+     * @param e Failure thrown by the policy
+     * @return boolean true if the circuit was open or the bulkhead full, false if Keycloak may have seen the call
+     */
+    public static boolean notSent(KeycloakIntegrationException e) {
+        return e.getCause() instanceof CallNotPermittedException || e.getCause() instanceof BulkheadFullException;
+    }
+
+    private <T> Callable<T> guarded(String operation, Callable<T> call) {
+        TimeLimiter timeLimiter = timeLimiterRegistry.timeLimiter(INSTANCE + "-" + operation, INSTANCE);
+        // The bulkhead sits outside the breaker, so a local burst of callers is not counted as Keycloak failing
+        return () -> {
+            bulkhead.acquirePermission();
+            AtomicBoolean permitClaimed = new AtomicBoolean();
+            try {
+                return circuitBreaker.executeCallable(() -> timeLimiter.executeFutureSupplier(
+                        () -> executor.submit(holdingPermit(permitClaimed, call))));
+            } finally {
+                // Released here only if the call never started, otherwise the call thread releases it
+                if (permitClaimed.compareAndSet(false, true)) {
+                    bulkhead.onComplete();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a call so that the thread running it releases the bulkhead permit when it returns
+     *
+     * @param permitClaimed Set by whichever of the call and its caller takes over the permit first
+     * @param call Keycloak call
+     * @return Callable<T> call that skips running once its caller gave up the permit
+     */
+    private <T> Callable<T> holdingPermit(AtomicBoolean permitClaimed, Callable<T> call) {
+        return () -> {
+            if (!permitClaimed.compareAndSet(false, true)) {
+                throw new CancellationException("Keycloak call abandoned before it started");
+            }
+            try {
+                return call.call();
+            } finally {
+                bulkhead.onComplete();
+            }
+        };
+    }
+
+    private <T> T execute(String operation, Callable<T> call) throws Exception {
+        OperationTimers timers = operationTimers.computeIfAbsent(operation, this::registerTimers);
+        long start = System.nanoTime();
+        Timer outcome = timers.error();
+        try {
+            T result = call.call();
+            outcome = timers.success();
+            return result;
+        } catch (ClientErrorException e) {
+            outcome = timers.clientError();
+            throw e;
+        } catch (CallNotPermittedException | BulkheadFullException | TimeoutException e) {
+            outcome = timers.rejected();
+            throw reject(operation, e);
+        } finally {
+            outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private KeycloakIntegrationException reject(String operation, Exception e) {
+        if (e instanceof CallNotPermittedException) {
+            return rejected(operation, "circuit_open", "Keycloak is unavailable, circuit breaker is open", e);
+        }
+        if (e instanceof BulkheadFullException) {
+            return rejected(operation, "bulkhead_full", "Too many concurrent Keycloak calls", e);
+        }
+        return rejected(operation, "timeout", "Keycloak " + operation + " timed out", e);
+    }
+
+    private OperationTimers registerTimers(String operation) {
+        return new OperationTimers(
+                timer(operation, "success"),
+                timer(operation, "client_error"),
+                timer(operation, "error"),
+                timer(operation, "rejected"));
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("keycloak.admin.requests")
+                .description("Keycloak admin call time, including retries")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record OperationTimers(Timer success, Timer clientError, Timer error, Timer rejected) {
+    }
+
+    private KeycloakIntegrationException rejected(String operation, String reason, String message, Exception cause) {
+        Counter.builder("keycloak.calls.rejected")
+                .description("Keycloak calls failed fast by the resilience policy")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new KeycloakIntegrationException(message, cause);
+    }
+}
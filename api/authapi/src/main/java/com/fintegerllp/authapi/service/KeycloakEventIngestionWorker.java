@@ -0,0 +1,459 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.cache.EmailBloomFilter;
+import com.fintegerllp.authapi.repository.EventCheckpointRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.EventCheckpoint;
+import com.fintegerllp.authapi.repository.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.EventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Background worker that copies name and email changes made in Keycloak
+ * (account console, admin console, admin API) into the users table, so reads
+ * never have to ask Keycloak.
+ * <p>
+ * Each poll reads the user profile events and the USER admin events newer
+ * than the last checkpoint, then fetches the current Keycloak state of every
+ * affected local user and writes it in batched transactions. Applying the
+ * current state instead of the event payload makes a poll idempotent and
+ * independent of event order, so events at the checkpoint are simply read
+ * again. When more events than max-pages holds are newer than the checkpoint,
+ * the poll reads the oldest max-pages of them instead and moves the checkpoint
+ * only that far, so a backlog is worked off in order. Updates go through the
+ * entities, which evicts {@link com.fintegerllp.authapi.cache.UserCache} and
+ * the second-level cache; the email filter is maintained here because entity
+ * listeners cannot see the previous email.
+ * <p>
+ * Requires user and admin events to be saved in the realm.
+ */
+@Component
+@ConditionalOnProperty(name = "app.keycloak-events.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class KeycloakEventIngestionWorker {
+
+    private static final String ADMIN_EVENTS = "keycloak-admin-events";
+    private static final String USER_EVENTS = "keycloak-user-events";
+
+    private static final List<String> USER_EVENT_TYPES = List.of("UPDATE_PROFILE", "UPDATE_EMAIL");
+    private static final String USERS_PATH = "users/";
+    private static final DateTimeFormatter EVENT_DATE = DateTimeFormatter.ISO_LOCAL_DATE.withZone(ZoneOffset.UTC);
+
+    private final KeycloakService keycloakService;
+    private final UserRepository userRepository;
+    private final EventCheckpointRepository checkpointRepository;
+    private final EmailBloomFilter emailBloomFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.keycloak-events.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.keycloak-events.max-pages:100}")
+    private int maxPages;
+
+    @Value("${app.keycloak-events.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.keycloak-events.parallelism:4}")
+    private int parallelism;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Result of one poll
+     *
+     * @param events Events read
+     * @param users Local users affected
+     * @param updated Users rows changed
+     */
+    public record Result(int events, int users, int updated) {
+    }
+
+    /**
+     * Events read since a checkpoint
+     *
+     * @param events Events, newest first
+     * @param complete Whether the read reached the checkpoint; if not, older events were left unread
+     */
+    private record EventsSince<T>(List<T> events, boolean complete) {
+    }
+
+    /**
+     * Applies new Keycloak events on a fixed delay
+     */
+    @Scheduled(fixedDelayString = "${app.keycloak-events.poll-interval-ms:30000}")
+    public void scheduledPoll() {
+        try {
+            poll();
+        } catch (Exception e) {
+            log.error("Keycloak event ingestion failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the events since the checkpoints, applies them and advances the checkpoints
+     *
+     * @return Result counts of the poll
+     */
+    public Result poll() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            EventCheckpoint adminCheckpoint = checkpoint(ADMIN_EVENTS);
+            EventCheckpoint userCheckpoint = checkpoint(USER_EVENTS);
+
+            EventsSince<AdminEventRepresentation> adminRead = readSince(adminCheckpoint,
+                    AdminEventRepresentation::getTime, (dateFrom, first, max) -> keycloakService.getAdminEvents(
+                            List.of("UPDATE"), List.of("USER"), dateFrom, first, max));
+            EventsSince<EventRepresentation> userRead = readSince(userCheckpoint,
+                    EventRepresentation::getTime, (dateFrom, first, max) -> keycloakService.getEvents(
+                            USER_EVENT_TYPES, dateFrom, first, max));
+            List<AdminEventRepresentation> adminEvents = adminRead.events();
+            List<EventRepresentation> userEvents = userRead.events();
+            countEvents("admin", adminEvents.size());
+            countEvents("user", userEvents.size());
+
+            Set<String> keycloakIds = new LinkedHashSet<>();
+            adminEvents.stream().map(event -> userId(event.getResourcePath())).filter(id -> id != null).forEach(keycloakIds::add);
+            userEvents.stream().map(EventRepresentation::getUserId).filter(id -> id != null).forEach(keycloakIds::add);
+
+            int users = 0;
+            int updated = 0;
+            if (!keycloakIds.isEmpty()) {
+                // Users without a row are not ours to sync, reconciliation deals with them
+                List<String> local = userRepository.findExistingKeycloakIds(keycloakIds);
+                users = local.size();
+                updated = apply(local);
+            }
+
+            // An incomplete read left older events unread, so its checkpoint stays put
+            advance(adminCheckpoint, adminRead.complete()
+                    ? adminEvents.stream().mapToLong(AdminEventRepresentation::getTime).max() : OptionalLong.empty());
+            advance(userCheckpoint, userRead.complete()
+                    ? userEvents.stream().mapToLong(EventRepresentation::getTime).max() : OptionalLong.empty());
+
+            Result result = new Result(adminEvents.size() + userEvents.size(), users, updated);
+            if (result.updated() > 0) {
+                log.info("Applied Keycloak events: {}", result);
+            }
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("keycloak.events.polls")
+                    .description("Keycloak event ingestion poll time")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Reads the events at or after a checkpoint; Keycloak returns them newest first and filters by day
+     *
+     * @param checkpoint Checkpoint
+     * @param time Event time accessor
+     * @param page Fetches a page given the first day, offset and size
+     * @return EventsSince<T> events at or after the checkpoint, the oldest max-pages of them if there are more
+     */
+    private <T> EventsSince<T> readSince(EventCheckpoint checkpoint, ToLongFunction<T> time, EventPage<T> page) {
+        long since = checkpoint.getLastEventTime();
+        // A day earlier so the server's time zone cannot cut off events of the checkpoint's day
+        String dateFrom = EVENT_DATE.format(Instant.ofEpochMilli(since).minusSeconds(24 * 60 * 60));
+        EventsSince<T> newest = readPages(0, maxPages, since, time, page, dateFrom);
+        if (newest.complete()) {
+            return newest;
+        }
+
+        // Reading newest first again next time would never reach the checkpoint under sustained volume,
+        // so read the max-pages just above it and let the checkpoint move up to them
+        log.warn("More than {} Keycloak events since checkpoint {}, applying the oldest first; "
+                + "raise app.keycloak-events.max-pages", maxPages * pageSize, checkpoint.getSource());
+        Counter.builder("keycloak.events.truncated")
+                .description("Polls with more events since the checkpoint than max-pages holds")
+                .tag("source", checkpoint.getSource())
+                .register(meterRegistry)
+                .increment();
+        int end = checkpointOffset(maxPages * pageSize, since, time, page, dateFrom);
+        // One page more than max-pages, for events that arrived since the offset was found
+        return readPages(Math.max(0, end - maxPages * pageSize), maxPages + 1, since, time, page, dateFrom);
+    }
+
+    /**
+     * Reads pages from an offset until an event older than the checkpoint
+     *
+     * @param first Offset of the first event
+     * @param pages Maximum number of pages
+     * @param since Checkpoint time
+     * @param time Event time accessor
+     * @param page Fetches a page given the first day, offset and size
+     * @param dateFrom First day
+     * @return EventsSince<T> events read, complete if an older event or the last page was reached
+     */
+    private <T> EventsSince<T> readPages(int first, int pages, long since, ToLongFunction<T> time,
+                                         EventPage<T> page, String dateFrom) {
+        List<T> events = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            List<T> batch = page.fetch(dateFrom, first + i * pageSize, pageSize);
+            for (T event : batch) {
+                if (time.applyAsLong(event) < since) {
+                    return new EventsSince<>(events, true);
+                }
+                events.add(event);
+            }
+            if (batch.size() < pageSize) {
+                return new EventsSince<>(events, true);
+            }
+        }
+        return new EventsSince<>(events, false);
+    }
+
+    /**
+     * Finds the offset of the first event older than the checkpoint by probing single events,
+     * doubling the offset and then bisecting
+     *
+     * @param newer Offset known to hold an event at or after the checkpoint
+     * @param since Checkpoint time
+     * @param time Event time accessor
+     * @param page Fetches a page given the first day, offset and size
+     * @param dateFrom First day
+     * @return int offset of the first older event, or the number of events if there is none
+     */
+    private <T> int checkpointOffset(int newer, long since, ToLongFunction<T> time,
+                                     EventPage<T> page, String dateFrom) {
+        int low = newer;
+        int high = newer * 2;
+        while (high < Integer.MAX_VALUE / 2 && isSince(high, since, time, page, dateFrom)) {
+            low = high;
+            high *= 2;
+        }
+        while (high - low > 1) {
+            int middle = low + (high - low) / 2;
+            if (isSince(middle, since, time, page, dateFrom)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    private <T> boolean isSince(int offset, long since, ToLongFunction<T> time, EventPage<T> page, String dateFrom) {
+        List<T> event = page.fetch(dateFrom, offset, 1);
+        return !event.isEmpty() && time.applyAsLong(event.get(0)) >= since;
+    }
+
+    @FunctionalInterface
+    private interface EventPage<T> {
+        List<T> fetch(String dateFrom, int first, int max);
+    }
+
+    /**
+     * Fetches the current Keycloak state of the users and writes it in batches
+     *
+     * @param keycloakIds Keycloak IDs of local users touched by events
+     * @return int users rows changed
+     */
+    private int apply(List<String> keycloakIds) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("keycloak-events-");
+        executor.setConcurrencyLimit(parallelism);
+        if (virtualThreads) {
+            executor.setVirtualThreads(true);
+        }
+        List<CompletableFuture<Optional<UserRepresentation>>> lookups = keycloakIds.stream()
+                .map(id -> CompletableFuture.supplyAsync(() -> keycloakService.findUserById(id), executor))
+                .toList();
+
+        Map<String, UserRepresentation> current = new LinkedHashMap<>();
+        for (int i = 0; i < keycloakIds.size(); i++) {
+            Optional<UserRepresentation> user = join(lookups.get(i));
+            if (user.isPresent()) {
+                current.put(keycloakIds.get(i), user.get());
+            } else {
+                // Deleted since the event, reconciliation reports the row
+                countUpdates("missing", 1);
+            }
+        }
+
+        int updated = 0;
+        List<String> ids = new ArrayList<>(current.keySet());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            Map<String, UserRepresentation> batch = new LinkedHashMap<>();
+            ids.subList(from, Math.min(from + batchSize, ids.size())).forEach(id -> batch.put(id, current.get(id)));
+            updated += applyBatch(batch);
+        }
+        return updated;
+    }
+
+    /**
+     * Writes one batch in a single transaction, falling back to one transaction per user on a conflict
+     *
+     * @param batch Current Keycloak state by Keycloak ID
+     * @return int users rows changed
+     */
+    private int applyBatch(Map<String, UserRepresentation> batch) {
+        try {
+            return update(batch);
+        } catch (DataIntegrityViolationException e) {
+            // Another row took one of the emails since the check, isolate it
+            int updated = 0;
+            for (Map.Entry<String, UserRepresentation> entry : batch.entrySet()) {
+                try {
+                    updated += update(Map.of(entry.getKey(), entry.getValue()));
+                } catch (DataIntegrityViolationException conflict) {
+                    log.warn("Email of Keycloak user {} is taken by another user", entry.getKey());
+                    countUpdates("conflict", 1);
+                }
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Copies name and email onto the users rows in one transaction
+     *
+     * @param batch Current Keycloak state by Keycloak ID
+     * @return int users rows changed
+     */
+    private int update(Map<String, UserRepresentation> batch) {
+        List<String> previousEmails = new ArrayList<>();
+        Integer updated = transactionTemplate.execute(status -> {
+            int changed = 0;
+            for (User user : userRepository.findAllByKeycloakIdIn(batch.keySet())) {
+                UserRepresentation source = batch.get(user.getKeycloakId());
+                String name = KeycloakService.displayName(source);
+                // Keycloak lowercases emails, a difference in case only is not a change
+                String email = source.getEmail() != null && !source.getEmail().equalsIgnoreCase(user.getEmail())
+                        ? source.getEmail() : user.getEmail();
+
+                if (!email.equals(user.getEmail()) && userRepository.existsByEmailIgnoreCase(email)) {
+                    // Keep the old email until the other user lets go of it, the name still applies
+                    log.warn("Email of Keycloak user {} is taken by another user", user.getKeycloakId());
+                    countUpdates("conflict", 1);
+                    email = user.getEmail();
+                }
+                if (name.equals(user.getName()) && email.equals(user.getEmail())) {
+                    countUpdates("unchanged", 1);
+                    continue;
+                }
+
+                if (!email.equals(user.getEmail())) {
+                    // Added before commit: a rollback only leaves a false positive
+                    emailBloomFilter.add(email);
+                    previousEmails.add(user.getEmail());
+                }
+                user.setName(name);
+                user.setEmail(email);
+                changed++;
+            }
+            return changed;
+        });
+
+        // Committed, the previous emails are free again
+        previousEmails.forEach(emailBloomFilter::remove);
+        int count = updated == null ? 0 : updated;
+        countUpdates("updated", count);
+        return count;
+    }
+
+    /**
+     * Loads a checkpoint, starting new sources at the current time
+     *
+     * @param source Event source
+     * @return EventCheckpoint checkpoint
+     */
+    private EventCheckpoint checkpoint(String source) {
+        return checkpointRepository.findById(source).orElseGet(() -> EventCheckpoint.builder()
+                .source(source)
+                .lastEventTime(System.currentTimeMillis())
+                .build());
+    }
+
+    /**
+     * Moves a checkpoint to the newest applied event, storing new checkpoints even without events
+     *
+     * @param checkpoint Checkpoint
+     * @param newest Time of the newest event read, empty if none or the read did not reach the checkpoint
+     */
+    private void advance(EventCheckpoint checkpoint, OptionalLong newest) {
+        if (newest.isPresent() && newest.getAsLong() > checkpoint.getLastEventTime()) {
+            checkpoint.setLastEventTime(newest.getAsLong());
+        } else if (checkpoint.getVersion() != null) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(checkpoint));
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            // Another instance polled concurrently; applying the same events twice is harmless
+            log.debug("Checkpoint {} moved concurrently", checkpoint.getSource());
+        }
+    }
+
+    /**
+     * Gets the user ID of an admin event on a user
+     *
+     * @param resourcePath Admin event resource path, e.g. users/{id}
+     * @return String user ID, null if the path is not a user
+     */
+    private static String userId(String resourcePath) {
+        if (resourcePath == null || !resourcePath.startsWith(USERS_PATH)) {
+            return null;
+        }
+        int end = resourcePath.indexOf('/', USERS_PATH.length());
+        return resourcePath.substring(USERS_PATH.length(), end < 0 ? resourcePath.length() : end);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void countEvents(String source, int count) {
+        Counter.builder("keycloak.events.ingested")
+                .description("Keycloak events read by the ingestion")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    private void countUpdates(String outcome, int count) {
+        Counter.builder("users.sync.updates")
+                .description("Users rows checked against Keycloak after an event")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
@@ -1,43 +1,44 @@
 package com.fintegerllp.authapi.service;
 
+import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.AdminEventRepresentation;
 import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.EventRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.ServerErrorException;
 import jakarta.ws.rs.core.Response;
 
+/**
+ * Keycloak admin operations. Every call goes through {@link KeycloakCallPolicy};
+ * Keycloak errors keep being reported as null/false, while calls the policy
+ * rejects or times out throw {@link KeycloakIntegrationException}. User
+ * creation and the reads that must not be mistaken for an empty answer throw
+ * it for every failure.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KeycloakService {
 
-    @Value("${keycloak.auth-server-url}")
-    private String serverUrl;
+    private final Keycloak keycloak;
+    private final KeycloakCallPolicy callPolicy;
 
     @Value("${keycloak.realm}")
     private String realm;
 
-    @Value("${keycloak.admin.client-id}")
-    private String clientId;
-
-    @Value("${keycloak.admin.username}")
-    private String adminUsername;
-
-    @Value("${keycloak.admin.password}")
-    private String adminPassword;
-
-    @Value("${keycloak.admin.realm}")
-    private String adminRealm;
-
     /**
      * Creates a user in Keycloak
      *
@@ -46,11 +47,10 @@ public class KeycloakService {
      * @param firstName First name
      * @param lastName Last name
      * @param password Password
-     * @return String keycloakId if successful, null if failed
+     * @return String keycloakId if created, null if Keycloak refused the user
+     * @throws KeycloakIntegrationException if the call fails, is rejected or times out
      */
     public String createUser(String username, String email, String firstName, String lastName, String password) {
-        Keycloak keycloak = getKeycloakInstance();
-
         // Define user
         UserRepresentation user = new UserRepresentation();
         user.setEnabled(true);
@@ -72,17 +72,22 @@ public class KeycloakService {
         UsersResource usersResource = realmResource.users();
 
         // Create user
-        try (Response response = usersResource.create(user)) {
-            if (response.getStatus() == 201) {
-                String locationHeader = response.getHeaderString("Location");
-                String userId = locationHeader.substring(locationHeader.lastIndexOf("/") + 1);
-                log.info("Created Keycloak user with ID: {}", userId);
-                return userId;
-            } else {
-                log.error("Failed to create Keycloak user. Status: {}", response.getStatus());
-                return null;
+        return writeOrThrow("createUser", () -> {
+            try (Response response = usersResource.create(user)) {
+                if (response.getStatus() == 201) {
+                    String locationHeader = response.getHeaderString("Location");
+                    String userId = locationHeader.substring(locationHeader.lastIndexOf("/") + 1);
+                    log.info("Created Keycloak user with ID: {}", userId);
+                    return userId;
+                } else if (response.getStatus() >= 500) {
+                    // Counted as a failure by the circuit breaker
+                    throw new ServerErrorException(response.getStatus());
+                } else {
+                    log.error("Failed to create Keycloak user. Status: {}", response.getStatus());
+                    return null;
+                }
             }
-        }
+        });
     }
 
     /**
@@ -93,18 +98,22 @@ public class KeycloakService {
      * @param lastName Last name
      * @param email Email
      * @return boolean indicating success
+     * @throws KeycloakIntegrationException if the call is rejected or times out
      */
     public boolean updateUser(String keycloakId, String firstName, String lastName, String email) {
-        Keycloak keycloak = getKeycloakInstance();
-
         try {
             UserRepresentation user = new UserRepresentation();
             user.setFirstName(firstName);
             user.setLastName(lastName);
             user.setEmail(email);
 
-            keycloak.realm(realm).users().get(keycloakId).update(user);
+            callPolicy.write("updateUser", () -> {
+                keycloak.realm(realm).users().get(keycloakId).update(user);
+                return null;
+            });
             return true;
+        } catch (KeycloakIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to update Keycloak user: {}", e.getMessage());
             return false;
@@ -116,12 +125,13 @@ public class KeycloakService {
      *
      * @param keycloakId Keycloak user ID
      * @return UserRepresentation
+     * @throws KeycloakIntegrationException if the call is rejected or times out
      */
     public UserRepresentation getUserById(String keycloakId) {
-        Keycloak keycloak = getKeycloakInstance();
-
         try {
-            return keycloak.realm(realm).users().get(keycloakId).toRepresentation();
+            return callPolicy.read("getUserById", () -> keycloak.realm(realm).users().get(keycloakId).toRepresentation());
+        } catch (KeycloakIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to get Keycloak user: {}", e.getMessage());
             return null;
@@ -133,31 +143,128 @@ public class KeycloakService {
      *
      * @param username Username (email)
      * @return UserRepresentation
+     * @throws KeycloakIntegrationException if the call is rejected or times out
      */
     public UserRepresentation getUserByUsername(String username) {
-        Keycloak keycloak = getKeycloakInstance();
-
         try {
-            List<UserRepresentation> users = keycloak.realm(realm).users().search(username, true);
+            List<UserRepresentation> users = callPolicy.read("getUserByUsername",
+                    () -> keycloak.realm(realm).users().search(username, true));
             return users.isEmpty() ? null : users.get(0);
+        } catch (KeycloakIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to get Keycloak user: {}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Lists a page of users in brief representation, in Keycloak's order
+     *
+     * @param first Offset of the first user
+     * @param max Page size
+     * @return List<UserRepresentation> users, shorter than max on the last page
+     * @throws KeycloakIntegrationException if the call fails; an empty page always means no more users
+     */
+    public List<UserRepresentation> listUsers(int first, int max) {
+        return readOrThrow("listUsers", () -> keycloak.realm(realm).users().search(null, first, max, true));
+    }
+
+    /**
+     * Checks whether a user exists in Keycloak
+     *
+     * @param keycloakId Keycloak user ID
+     * @return boolean true if the user exists, false if Keycloak answered 404
+     * @throws KeycloakIntegrationException if the call fails; an error is never reported as a missing user
+     */
+    public boolean userExists(String keycloakId) {
+        return findUserById(keycloakId).isPresent();
+    }
+
+    /**
+     * Gets a user from Keycloak by ID, telling a missing user apart from a failed call
+     *
+     * @param keycloakId Keycloak user ID
+     * @return Optional<UserRepresentation> the user, empty if Keycloak answered 404
+     * @throws KeycloakIntegrationException if the call fails
+     */
+    public Optional<UserRepresentation> findUserById(String keycloakId) {
+        try {
+            return Optional.of(callPolicy.read("getUserById",
+                    () -> keycloak.realm(realm).users().get(keycloakId).toRepresentation()));
+        } catch (NotFoundException e) {
+            return Optional.empty();
+        } catch (KeycloakIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KeycloakIntegrationException("Failed to look up Keycloak user: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets a page of admin events, newest first
+     *
+     * @param operationTypes Operation types, e.g. UPDATE
+     * @param resourceTypes Resource types, e.g. USER
+     * @param dateFrom First day (yyyy-MM-dd)
+     * @param first Offset of the first event
+     * @param max Page size
+     * @return List<AdminEventRepresentation> events, shorter than max on the last page
+     * @throws KeycloakIntegrationException if the call fails
+     */
+    public List<AdminEventRepresentation> getAdminEvents(List<String> operationTypes, List<String> resourceTypes,
+                                                         String dateFrom, int first, int max) {
+        return readOrThrow("getAdminEvents", () -> keycloak.realm(realm).getAdminEvents(
+                operationTypes, null, null, null, null, null, resourceTypes, dateFrom, null, first, max));
+    }
+
+    /**
+     * Gets a page of user events, newest first
+     *
+     * @param types Event types, e.g. UPDATE_PROFILE
+     * @param dateFrom First day (yyyy-MM-dd)
+     * @param first Offset of the first event
+     * @param max Page size
+     * @return List<EventRepresentation> events, shorter than max on the last page
+     * @throws KeycloakIntegrationException if the call fails
+     */
+    public List<EventRepresentation> getEvents(List<String> types, String dateFrom, int first, int max) {
+        return readOrThrow("getEvents", () -> keycloak.realm(realm).getEvents(
+                types, null, null, dateFrom, null, null, first, max));
+    }
+
+    /**
+     * Gets the local display name of a Keycloak user, the reverse of the split done on registration
+     *
+     * @param user Keycloak user
+     * @return String first and last name, the username if both are empty
+     */
+    public static String displayName(UserRepresentation user) {
+        String name = ((user.getFirstName() == null ? "" : user.getFirstName()) + " "
+                + (user.getLastName() == null ? "" : user.getLastName())).trim();
+        return name.isEmpty() ? user.getUsername() : name;
+    }
+
     /**
      * Deletes a user in Keycloak
      *
      * @param keycloakId Keycloak user ID
      * @return boolean indicating success
+     * @throws KeycloakIntegrationException if the call is rejected or times out
      */
     public boolean deleteUser(String keycloakId) {
-        Keycloak keycloak = getKeycloakInstance();
-
         try {
-            keycloak.realm(realm).users().delete(keycloakId);
+            callPolicy.write("deleteUser", () -> {
+                try (Response response = keycloak.realm(realm).users().delete(keycloakId)) {
+                    if (response.getStatus() >= 500) {
+                        throw new ServerErrorException(response.getStatus());
+                    }
+                    return null;
+                }
+            });
             return true;
+        } catch (KeycloakIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to delete Keycloak user: {}", e.getMessage());
             return false;
@@ -170,18 +277,22 @@ public class KeycloakService {
      * @param keycloakId Keycloak user ID
      * @param newPassword New password
      * @return boolean indicating success
+     * @throws KeycloakIntegrationException if the call is rejected or times out
      */
     public boolean resetPassword(String keycloakId, String newPassword) {
-        Keycloak keycloak = getKeycloakInstance();
-
         try {
             CredentialRepresentation credential = new CredentialRepresentation();
             credential.setType(CredentialRepresentation.PASSWORD);
             credential.setValue(newPassword);
             credential.setTemporary(false);
 
-            keycloak.realm(realm).users().get(keycloakId).resetPassword(credential);
+            callPolicy.write("resetPassword", () -> {
+                keycloak.realm(realm).users().get(keycloakId).resetPassword(credential);
+                return null;
+            });
             return true;
+        } catch (KeycloakIntegrationException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to reset Keycloak user password: {}", e.getMessage());
             return false;
@@ -189,17 +300,38 @@ public class KeycloakService {
     }
 
     /**
-     * Gets a Keycloak admin client instance
+     * Runs a write whose failures must not be mistaken for a refusal
      *
-     * @return Keycloak instance
+     * @param operation Operation name
+     * @param call Keycloak call
+     * @return T call result
+     * @throws KeycloakIntegrationException if the call fails for any reason
      */
-    private Keycloak getKeycloakInstance() {
-        return KeycloakBuilder.builder()
-                .serverUrl(serverUrl)
-                .realm(adminRealm)
-                .clientId(clientId)
-                .username(adminUsername)
-                .password(adminPassword)
-                .build();
+    private <T> T writeOrThrow(String operation, Callable<T> call) {
+        try {
+            return callPolicy.write(operation, call);
+        } catch (KeycloakIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KeycloakIntegrationException("Keycloak " + operation + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs a read whose failures must not be mistaken for an empty answer
+     *
+     * @param operation Operation name
+     * @param call Keycloak call
+     * @return T call result
+     * @throws KeycloakIntegrationException if the call fails for any reason
+     */
+    private <T> T readOrThrow(String operation, Callable<T> call) {
+        try {
+            return callPolicy.read(operation, call);
+        } catch (KeycloakIntegrationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KeycloakIntegrationException("Keycloak " + operation + " failed: " + e.getMessage(), e);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.fintegerllp.authapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile JSON parsing and serialization, timed as profile.json with
+ * operation and outcome tags. Timers are registered once so the hot path only
+ * records.
+ */
+@Component
+public class ProfileJsonCodec {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Timer parseSuccess;
+    private final Timer parseError;
+    private final Timer serializeSuccess;
+    private final Timer serializeError;
+
+    public ProfileJsonCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.parseSuccess = timer(meterRegistry, "parse", "success");
+        this.parseError = timer(meterRegistry, "parse", "error");
+        this.serializeSuccess = timer(meterRegistry, "serialize", "success");
+        this.serializeError = timer(meterRegistry, "serialize", "error");
+    }
+
+    /**
+     * Parses a JSON object
+     *
+     * @param json JSON object text
+     * @return Map<String, Object> parsed object
+     */
+    public Map<String, Object> readMap(String json) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> value = objectMapper.readValue(json, MAP_TYPE);
+            parseSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return value;
+        } catch (JsonProcessingException e) {
+            parseError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Serializes a value to JSON
+     *
+     * @param value Value to serialize
+     * @return String JSON text
+     */
+    public String write(Object value) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            String json = objectMapper.writeValueAsString(value);
+            serializeSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return json;
+        } catch (JsonProcessingException e) {
+            serializeError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String operation, String outcome) {
+        return Timer.builder("profile.json")
+                .description("Profile JSON parse and serialize time")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,56 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.repository.RegistrationOutboxRepository;
+import com.fintegerllp.authapi.repository.model.RegistrationOutbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background worker that finishes registrations interrupted between the
+ * Keycloak call and the local insert (crash, restart, failed compensation).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationOutboxWorker {
+
+    private final RegistrationOutboxRepository outboxRepository;
+    private final RegistrationPipeline registrationPipeline;
+
+    @Value("${app.registration.outbox.stale-after-seconds:60}")
+    private long staleAfterSeconds;
+
+    @Value("${app.registration.outbox.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * Picks up outbox entries that have not progressed recently and retries them
+     */
+    @Scheduled(fixedDelayString = "${app.registration.outbox.poll-interval-ms:30000}")
+    public void processStaleEntries() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(staleAfterSeconds);
+        List<RegistrationOutbox> stale = outboxRepository.findByUpdatedAtBefore(
+                cutoff, PageRequest.of(0, batchSize, Sort.by("id")));
+
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        log.info("Processing {} stale registration outbox entries", stale.size());
+        for (RegistrationOutbox entry : stale) {
+            try {
+                registrationPipeline.recover(entry);
+            } catch (Exception e) {
+                log.error("Error processing registration outbox entry {}: {}", entry.getId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.config.ReadYourWritesTracker;
+import com.fintegerllp.authapi.dto.RegistrationDto;
+import com.fintegerllp.authapi.exception.EmailAlreadyExistsException;
+import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
+import com.fintegerllp.authapi.repository.RegistrationOutboxRepository;
+import com.fintegerllp.authapi.repository.UserProfileRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.RegistrationOutbox;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Registration pipeline that keeps the Keycloak round-trip outside of any
+ * database transaction. Each step that touches the database runs in its own
+ * short transaction, and progress is recorded in the registration outbox so
+ * that {@link RegistrationOutboxWorker} can finish or compensate registrations
+ * interrupted half-way.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationPipeline {
+
+    private final RegistrationOutboxRepository outboxRepository;
+    private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final KeycloakService keycloakService;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadYourWritesTracker readYourWrites;
+
+    @Value("${app.registration.outbox.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Registers a user in Keycloak and in the local database
+     *
+     * @param registrationDto Registration data
+     * @return User saved user entity
+     */
+    public User register(RegistrationDto registrationDto) {
+        RegistrationOutbox pending = recordPending(registrationDto);
+
+        // Parse name into first and last name
+        String[] nameParts = registrationDto.getName().split(" ", 2);
+        String firstName = nameParts[0];
+        String lastName = nameParts.length > 1 ? nameParts[1] : "";
+
+        // Create user in Keycloak, no database connection is held here
+        String keycloakId;
+        try {
+            keycloakId = keycloakService.createUser(
+                    registrationDto.getEmail(),
+                    registrationDto.getEmail(),
+                    firstName,
+                    lastName,
+                    registrationDto.getPassword()
+            );
+        } catch (KeycloakIntegrationException e) {
+            // A timed out call may still have created the user, only a call never sent is safe to forget
+            if (KeycloakCallPolicy.notSent(e)) {
+                discard(pending);
+            }
+            throw e;
+        }
+
+        if (keycloakId == null) {
+            discard(pending);
+            throw new RuntimeException("Failed to create user in Keycloak");
+        }
+
+        return complete(markKeycloakCreated(pending, keycloakId));
+    }
+
+    /**
+     * Retries an outbox entry left behind by an interrupted registration
+     *
+     * @param entry Stale outbox entry
+     */
+    public void recover(RegistrationOutbox entry) {
+        RegistrationOutbox claimed = claim(entry);
+        if (claimed == null) {
+            return;
+        }
+
+        if (claimed.getStatus() == RegistrationOutbox.Status.PENDING) {
+            // The Keycloak call was interrupted, find out whether it went through
+            UserRepresentation keycloakUser = findKeycloakUser(claimed.getEmail());
+            if (keycloakUser == null) {
+                if (claimed.getAttempts() >= maxAttempts) {
+                    log.warn("Discarding registration for {} after {} attempts", claimed.getEmail(), claimed.getAttempts());
+                    discard(claimed);
+                }
+                return;
+            }
+
+            claimed = markKeycloakCreated(claimed, keycloakUser.getId());
+        }
+
+        try {
+            complete(claimed);
+            log.info("Recovered registration for {}", claimed.getEmail());
+        } catch (RuntimeException e) {
+            log.error("Failed to recover registration for {}: {}", claimed.getEmail(), e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts the local user and profile, compensating in Keycloak on failure
+     *
+     * @param entry Outbox entry in KEYCLOAK_CREATED state
+     * @return User saved user entity
+     */
+    private User complete(RegistrationOutbox entry) {
+        try {
+            User user = transactionTemplate.execute(status -> {
+                User savedUser = userRepository.save(User.builder()
+                        .keycloakId(entry.getKeycloakId())
+                        .name(entry.getName())
+                        .email(entry.getEmail())
+                        .build());
+
+                userProfileRepository.save(UserProfile.builder()
+                        .user(savedUser)
+                        .profileData("{}")
+                        .settings("{}")
+                        .build());
+
+                outboxRepository.delete(entry);
+                return savedUser;
+            });
+            // The new user's first requests must find the row even if replicas lag
+            readYourWrites.recordWrite(entry.getKeycloakId());
+            return user;
+        } catch (RuntimeException e) {
+            log.error("Failed to save user {}, compensating in Keycloak: {}", entry.getEmail(), e.getMessage());
+            try {
+                if (keycloakService.deleteUser(entry.getKeycloakId())) {
+                    discard(entry);
+                }
+            } catch (KeycloakIntegrationException keycloakError) {
+                // The outbox entry stays behind and the worker retries the registration
+                log.warn("Compensation for {} deferred: {}", entry.getEmail(), keycloakError.getMessage());
+            }
+            throw new RuntimeException("Failed to save registered user", e);
+        }
+    }
+
+    /**
+     * Looks up the Keycloak user of an interrupted registration
+     *
+     * @param email Registration email
+     * @return UserRepresentation the user, null if not found or Keycloak could not be asked
+     */
+    private UserRepresentation findKeycloakUser(String email) {
+        try {
+            return keycloakService.getUserByUsername(email);
+        } catch (KeycloakIntegrationException e) {
+            // Counts as an attempt, so an entry still gets discarded while Keycloak stays unavailable
+            log.warn("Could not look up Keycloak user for {}: {}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records a pending registration in the outbox
+     *
+     * @param registrationDto Registration data
+     * @return RegistrationOutbox saved entry
+     */
+    private RegistrationOutbox recordPending(RegistrationDto registrationDto) {
+        try {
+            return transactionTemplate.execute(status -> outboxRepository.saveAndFlush(RegistrationOutbox.builder()
+                    .email(registrationDto.getEmail())
+                    .name(registrationDto.getName())
+                    .status(RegistrationOutbox.Status.PENDING)
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            throw new EmailAlreadyExistsException("Registration already in progress for this email");
+        }
+    }
+
+    /**
+     * Records that the Keycloak user for an outbox entry exists
+     *
+     * @param entry Outbox entry
+     * @param keycloakId Keycloak user ID
+     * @return RegistrationOutbox updated entry
+     */
+    private RegistrationOutbox markKeycloakCreated(RegistrationOutbox entry, String keycloakId) {
+        entry.setKeycloakId(keycloakId);
+        entry.setStatus(RegistrationOutbox.Status.KEYCLOAK_CREATED);
+        return transactionTemplate.execute(status -> outboxRepository.save(entry));
+    }
+
+    /**
+     * Claims an outbox entry by bumping its attempt count
+     *
+     * @param entry Outbox entry
+     * @return RegistrationOutbox claimed entry, null if another worker got it first
+     */
+    private RegistrationOutbox claim(RegistrationOutbox entry) {
+        try {
+            entry.setAttempts(entry.getAttempts() + 1);
+            return transactionTemplate.execute(status -> outboxRepository.saveAndFlush(entry));
+        } catch (OptimisticLockingFailureException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes an outbox entry
+     *
+     * @param entry Outbox entry
+     */
+    private void discard(RegistrationOutbox entry) {
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteById(entry.getId()));
+    }
+}
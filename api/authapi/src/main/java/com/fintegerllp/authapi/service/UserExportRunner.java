@@ -0,0 +1,58 @@
+package com.fintegerllp.authapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Exports users to a file at startup and exits, for backups from a shell:
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none --app.export.file=users.ndjson.gz
+ * </pre>
+ * The format follows the file extension unless app.export.format is set, and a
+ * .gz suffix gzips the file.
+ */
+@Component
+@ConditionalOnProperty(name = "app.export.file")
+@RequiredArgsConstructor
+@Slf4j
+public class UserExportRunner implements ApplicationRunner {
+
+    private final UserExportService userExportService;
+    private final ConfigurableApplicationContext applicationContext;
+
+    @Value("${app.export.file}")
+    private Path file;
+
+    @Value("${app.export.format:}")
+    private String format;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        UserExportService.Format exportFormat = UserExportService.Format.of(!format.isBlank() ? format
+                : name.endsWith(".csv") || name.endsWith(".csv.gz") ? "csv" : "ndjson");
+
+        long count;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            count = userExportService.export(exportFormat, gzip, out);
+        }
+        log.info("Wrote {} users to {}", count, file.toAbsolutePath());
+
+        // Schedulers would keep the JVM running otherwise
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+}
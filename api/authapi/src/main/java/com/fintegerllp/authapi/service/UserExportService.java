@@ -0,0 +1,186 @@
+package com.fintegerllp.authapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.projection.UserExportRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all users with their profile JSON as NDJSON or CSV. Rows come from a
+ * forward-only Postgres cursor (fetch size 1000, which needs the transaction)
+ * and each one is written out before the next is read, so memory stays flat
+ * whatever the table size. Writes block while the target is slow, which stops
+ * reading from the cursor until it catches up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,keycloak_id,name,email,created_at,updated_at,profile_data,settings";
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Gets the format by name, ignoring case
+         *
+         * @param name ndjson or csv
+         * @return Format the format
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + name);
+        }
+    }
+
+    /**
+     * Writes every user to the stream, which is flushed but left open
+     *
+     * @param format Output format
+     * @param gzip Whether to gzip the output
+     * @param out Target stream
+     * @return long number of exported users
+     * @throws IOException if writing fails
+     */
+    @Transactional(readOnly = true)
+    public long export(Format format, boolean gzip, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        // Nothing on top of out is closed, finish() completes the gzip trailer
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        long count;
+        try (Stream<UserExportRow> rows = userRepository.streamExportRows()) {
+            count = format == Format.CSV ? writeCsv(rows.iterator(), writer) : writeNdjson(rows.iterator(), writer);
+        }
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+
+        log.info("Exported {} users as {} in {} ms", count, format, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<UserExportRow> rows, Writer writer) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // One object per line, so no separator between root values
+            generator.setRootValueSeparator(null);
+            while (rows.hasNext()) {
+                UserExportRow row = rows.next();
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.id());
+                generator.writeStringField("keycloakId", row.keycloakId());
+                generator.writeStringField("name", row.name());
+                generator.writeStringField("email", row.email());
+                generator.writeStringField("createdAt", timestamp(row.createdAt()));
+                generator.writeStringField("updatedAt", timestamp(row.updatedAt()));
+                // jsonb columns are passed through as they come from Postgres
+                writeRawJsonField(generator, "profileData", row.profileData());
+                writeRawJsonField(generator, "settings", row.settings());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void writeRawJsonField(JsonGenerator generator, String name, String json) throws IOException {
+        generator.writeFieldName(name);
+        if (json == null) {
+            generator.writeNull();
+        } else {
+            generator.writeRawValue(json);
+        }
+    }
+
+    private long writeCsv(Iterator<UserExportRow> rows, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        long count = 0;
+        while (rows.hasNext()) {
+            UserExportRow row = rows.next();
+            writer.write(String.valueOf(row.id()));
+            writeCsvField(writer, row.keycloakId());
+            writeCsvField(writer, row.name());
+            writeCsvField(writer, row.email());
+            writeCsvField(writer, timestamp(row.createdAt()));
+            writeCsvField(writer, timestamp(row.updatedAt()));
+            writeCsvField(writer, row.profileData());
+            writeCsvField(writer, row.settings());
+            writer.write("\r\n");
+            count++;
+        }
+        return count;
+    }
+
+    // RFC 4180: quote fields holding a separator, quote or line break, doubling the quotes
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String timestamp(LocalDateTime timestamp) {
+        return timestamp == null ? null : timestamp.toString();
+    }
+}
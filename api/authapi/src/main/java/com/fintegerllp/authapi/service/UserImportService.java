@@ -0,0 +1,400 @@
+package com.fintegerllp.authapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.cache.EmailBloomFilter;
+import com.fintegerllp.authapi.dto.ImportRowResultDto;
+import com.fintegerllp.authapi.dto.ImportSummaryDto;
+import com.fintegerllp.authapi.dto.RegistrationDto;
+import com.fintegerllp.authapi.repository.UserProfileRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ExecutorServiceAdapter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk user import. Rows are read from the request stream in batches, Keycloak
+ * users of a batch are created with bounded parallelism and the local rows are
+ * written with JDBC batching in one transaction per batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportService {
+
+    private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final KeycloakService keycloakService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EmailBloomFilter emailBloomFilter;
+
+    @Value("${app.import.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.import.keycloak-parallelism:8}")
+    private int keycloakParallelism;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Imports users from an NDJSON or CSV stream
+     *
+     * @param input Request body
+     * @param csv true for CSV with a name,email,password header, false for NDJSON
+     * @param sink Receives the result of every row, in input order
+     * @return ImportSummaryDto Counts and throughput of the import
+     */
+    public ImportSummaryDto importUsers(InputStream input, boolean csv, Consumer<ImportRowResultDto> sink) throws IOException {
+        long start = System.nanoTime();
+        long[] counts = new long[ImportRowResultDto.Status.values().length];
+        Consumer<ImportRowResultDto> countingSink = result -> {
+            counts[result.getStatus().ordinal()]++;
+            sink.accept(result);
+        };
+
+        ExecutorService executor = newKeycloakExecutor();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            List<String> csvHeader = null;
+            if (csv) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    return summarize(counts, start);
+                }
+                csvHeader = parseCsvLine(header).stream().map(String::trim).collect(Collectors.toList());
+            }
+
+            List<ImportRow> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(parseRow(lineNumber, line, csvHeader));
+                if (batch.size() == batchSize) {
+                    processBatch(batch, executor, countingSink);
+                    batch.clear();
+                    logProgress(counts, start);
+                }
+            }
+            if (!batch.isEmpty()) {
+                processBatch(batch, executor, countingSink);
+            }
+        } finally {
+            // ExecutorServiceAdapter refuses shutdown; its virtual threads end with their tasks
+            if (!(executor instanceof ExecutorServiceAdapter)) {
+                executor.shutdown();
+            }
+        }
+
+        ImportSummaryDto summary = summarize(counts, start);
+        log.info("User import finished: {}", summary);
+        return summary;
+    }
+
+    /**
+     * Creates the Keycloak users of a batch in parallel and saves them locally
+     *
+     * @param batch Parsed rows
+     * @param executor Executor bounding the Keycloak parallelism
+     * @param sink Row result consumer
+     */
+    private void processBatch(List<ImportRow> batch, ExecutorService executor, Consumer<ImportRowResultDto> sink) {
+        ImportRowResultDto[] results = new ImportRowResultDto[batch.size()];
+
+        // Skip rows whose email is already registered or repeated within the batch
+        List<String> candidates = batch.stream()
+                .filter(row -> row.error() == null)
+                .map(row -> row.dto().getEmail())
+                .filter(emailBloomFilter::mightContain)
+                .collect(Collectors.toList());
+        Set<String> existing = candidates.isEmpty() ? new HashSet<>() : new HashSet<>(userRepository.findExistingEmails(candidates));
+        Set<String> seen = new HashSet<>();
+
+        List<CompletableFuture<String>> keycloakIds = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ImportRow row = batch.get(i);
+            if (row.error() != null) {
+                results[i] = result(row, ImportRowResultDto.Status.FAILED, null, row.error());
+            } else if (existing.contains(row.dto().getEmail()) || !seen.add(row.dto().getEmail())) {
+                results[i] = result(row, ImportRowResultDto.Status.SKIPPED, null, "Email already in use");
+            }
+            keycloakIds.add(results[i] != null
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.supplyAsync(() -> createKeycloakUser(row.dto()), executor));
+        }
+
+        List<Integer> created = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            String keycloakId = keycloakIds.get(i).join();
+            if (keycloakId == null) {
+                results[i] = result(batch.get(i), ImportRowResultDto.Status.FAILED, null, "Failed to create user in Keycloak");
+            } else {
+                batch.set(i, batch.get(i).withKeycloakId(keycloakId));
+                created.add(i);
+            }
+        }
+
+        saveBatch(batch, created, results, executor);
+
+        for (ImportRowResultDto result : results) {
+            sink.accept(result);
+        }
+    }
+
+    /**
+     * Saves the users created in Keycloak, falling back to row-by-row inserts
+     * if the batch fails so that only the offending rows are compensated
+     *
+     * @param batch Parsed rows
+     * @param created Indexes of rows created in Keycloak
+     * @param results Row results, filled in for the saved rows
+     * @param executor Executor bounding the Keycloak parallelism
+     */
+    private void saveBatch(List<ImportRow> batch, List<Integer> created, ImportRowResultDto[] results,
+                           ExecutorService executor) {
+        if (created.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<User> saved = transactionTemplate.execute(status -> saveUsers(created.stream().map(batch::get).collect(Collectors.toList())));
+            for (int i = 0; i < created.size(); i++) {
+                ImportRow row = batch.get(created.get(i));
+                results[created.get(i)] = result(row, ImportRowResultDto.Status.CREATED, saved.get(i).getId(), null);
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Batch insert of {} imported users failed, retrying row by row: {}", created.size(), e.getMessage());
+        }
+
+        List<CompletableFuture<Void>> compensations = new ArrayList<>();
+        for (Integer index : created) {
+            ImportRow row = batch.get(index);
+            try {
+                List<User> saved = transactionTemplate.execute(status -> saveUsers(List.of(row)));
+                results[index] = result(row, ImportRowResultDto.Status.CREATED, saved.get(0).getId(), null);
+            } catch (RuntimeException e) {
+                results[index] = result(row, ImportRowResultDto.Status.FAILED, null, "Failed to save user");
+                compensations.add(CompletableFuture.runAsync(() -> deleteKeycloakUser(row.keycloakId()), executor));
+            }
+        }
+        compensations.forEach(CompletableFuture::join);
+    }
+
+    /**
+     * Saves users and their empty profiles; with a sequence ID generator
+     * Hibernate sends these as JDBC batches
+     *
+     * @param rows Rows with Keycloak IDs
+     * @return List<User> saved users, in row order
+     */
+    private List<User> saveUsers(List<ImportRow> rows) {
+        List<User> users = rows.stream()
+                .map(row -> User.builder()
+                        .keycloakId(row.keycloakId())
+                        .name(row.dto().getName())
+                        .email(row.dto().getEmail())
+                        .build())
+                .collect(Collectors.toList());
+        List<User> saved = userRepository.saveAll(users);
+
+        userProfileRepository.saveAll(saved.stream()
+                .map(user -> UserProfile.builder()
+                        .user(user)
+                        .profileData("{}")
+                        .settings("{}")
+                        .build())
+                .collect(Collectors.toList()));
+        return saved;
+    }
+
+    /**
+     * Creates a single user in Keycloak
+     *
+     * @param dto Registration data
+     * @return String keycloakId, null if failed
+     */
+    private String createKeycloakUser(RegistrationDto dto) {
+        String[] nameParts = dto.getName().split(" ", 2);
+        String firstName = nameParts[0];
+        String lastName = nameParts.length > 1 ? nameParts[1] : "";
+        try {
+            return keycloakService.createUser(dto.getEmail(), dto.getEmail(), firstName, lastName, dto.getPassword());
+        } catch (RuntimeException e) {
+            log.error("Failed to create Keycloak user {}: {}", dto.getEmail(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes a Keycloak user whose local insert failed
+     *
+     * @param keycloakId Keycloak user ID
+     */
+    private void deleteKeycloakUser(String keycloakId) {
+        try {
+            keycloakService.deleteUser(keycloakId);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete Keycloak user {} after failed import: {}", keycloakId, e.getMessage());
+        }
+    }
+
+    /**
+     * Parses and validates one input line
+     *
+     * @param lineNumber Line number in the input
+     * @param line Raw line
+     * @param csvHeader CSV column names, null for NDJSON
+     * @return ImportRow parsed row, carrying an error if invalid
+     */
+    private ImportRow parseRow(long lineNumber, String line, List<String> csvHeader) {
+        RegistrationDto dto;
+        try {
+            if (csvHeader == null) {
+                dto = objectMapper.readValue(line, RegistrationDto.class);
+            } else {
+                List<String> values = parseCsvLine(line);
+                dto = new RegistrationDto();
+                for (int i = 0; i < csvHeader.size() && i < values.size(); i++) {
+                    switch (csvHeader.get(i)) {
+                        case "name" -> dto.setName(values.get(i));
+                        case "email" -> dto.setEmail(values.get(i));
+                        case "password" -> dto.setPassword(values.get(i));
+                        default -> { }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            return new ImportRow(lineNumber, null, null, "Malformed row");
+        }
+
+        Set<ConstraintViolation<RegistrationDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            String error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return new ImportRow(lineNumber, dto, null, error);
+        }
+        return new ImportRow(lineNumber, dto, null, null);
+    }
+
+    /**
+     * Splits a CSV line, honouring double-quoted fields
+     *
+     * @param line CSV line
+     * @return List<String> field values
+     */
+    private List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    /**
+     * Creates the executor for the Keycloak calls of one import
+     *
+     * @return ExecutorService bounded to the configured parallelism, only shut down when it is a thread pool
+     */
+    private ExecutorService newKeycloakExecutor() {
+        if (!virtualThreads) {
+            return Executors.newFixedThreadPool(keycloakParallelism);
+        }
+        // Virtual threads are cheap to block but still bounded so Keycloak is not flooded
+        SimpleAsyncTaskExecutor virtualExecutor = new SimpleAsyncTaskExecutor("user-import-");
+        virtualExecutor.setVirtualThreads(true);
+        virtualExecutor.setConcurrencyLimit(keycloakParallelism);
+        return new ExecutorServiceAdapter(virtualExecutor);
+    }
+
+    private ImportRowResultDto result(ImportRow row, ImportRowResultDto.Status status, Long userId, String error) {
+        return ImportRowResultDto.builder()
+                .line(row.lineNumber())
+                .email(row.dto() != null ? row.dto().getEmail() : null)
+                .status(status)
+                .userId(userId)
+                .error(error)
+                .build();
+    }
+
+    private void logProgress(long[] counts, long start) {
+        ImportSummaryDto progress = summarize(counts, start);
+        log.info("User import progress: {} rows, {} rows/s", progress.getTotal(), String.format("%.1f", progress.getRowsPerSecond()));
+    }
+
+    private ImportSummaryDto summarize(long[] counts, long start) {
+        long created = counts[ImportRowResultDto.Status.CREATED.ordinal()];
+        long skipped = counts[ImportRowResultDto.Status.SKIPPED.ordinal()];
+        long failed = counts[ImportRowResultDto.Status.FAILED.ordinal()];
+        long total = created + skipped + failed;
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return ImportSummaryDto.builder()
+                .total(total)
+                .created(created)
+                .skipped(skipped)
+                .failed(failed)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(total * 1000.0 / elapsedMillis)
+                .build();
+    }
+
+    private record ImportRow(long lineNumber, RegistrationDto dto, String keycloakId, String error) {
+
+        ImportRow withKeycloakId(String keycloakId) {
+            return new ImportRow(lineNumber, dto, keycloakId, error);
+        }
+    }
+}
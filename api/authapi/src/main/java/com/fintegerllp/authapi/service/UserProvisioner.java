@@ -0,0 +1,159 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.cache.EmailBloomFilter;
+import com.fintegerllp.authapi.cache.UserCache;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Just-in-time provisioning of users that exist in Keycloak but have no users
+ * row yet (SSO, admin-created or imported users). The row and an empty profile
+ * are built from the access token claims, so no Keycloak admin call is made.
+ * <p>
+ * Runs before the request reaches the service transactions, which would
+ * otherwise hold a connection while waiting for the provisioning one. The
+ * user is loaded through {@link UserCache}, so known subjects cost nothing
+ * once cached and concurrent first requests of a subject share one load on
+ * this instance; across instances the insert skips rows that already exist.
+ * Subjects that cannot be provisioned are remembered for a while, so their
+ * requests do not retry the insert every time.
+ */
+@Component
+@ConditionalOnProperty(name = "app.users.jit-provisioning.enabled", havingValue = "true")
+@Slf4j
+public class UserProvisioner {
+
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final EmailBloomFilter emailBloomFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, Boolean> rejectedSubjects;
+    private final Counter created;
+    private final Counter existing;
+    private final Counter rejected;
+
+    public UserProvisioner(UserRepository userRepository,
+                           UserCache userCache,
+                           EmailBloomFilter emailBloomFilter,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.users.jit-provisioning.rejected-max-size:10000}") long rejectedMaxSize,
+                           @Value("${app.users.jit-provisioning.rejected-ttl-seconds:300}") long rejectedTtlSeconds) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.emailBloomFilter = emailBloomFilter;
+        this.transactionTemplate = transactionTemplate;
+        this.rejectedSubjects = Caffeine.newBuilder()
+                .maximumSize(rejectedMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(rejectedTtlSeconds))
+                .build();
+        this.created = provisioned(meterRegistry, "created");
+        this.existing = provisioned(meterRegistry, "existing");
+        this.rejected = provisioned(meterRegistry, "rejected");
+    }
+
+    /**
+     * Makes sure the token's subject has a users row, creating it from the claims if needed
+     *
+     * @param jwt Access token of the current request
+     * @return Optional<UserSummary> user, empty if it could not be provisioned
+     */
+    public Optional<UserSummary> provision(Jwt jwt) {
+        // UserCache does not keep empty results, so rejections are remembered here
+        if (rejectedSubjects.getIfPresent(jwt.getSubject()) != null) {
+            return Optional.empty();
+        }
+        return userCache.get(jwt.getSubject(), keycloakId -> userRepository.findByKeycloakId(keycloakId)
+                .map(UserSummary::of)
+                .or(() -> insert(jwt)));
+    }
+
+    /**
+     * Inserts the user and an empty profile from the token claims
+     *
+     * @param jwt Access token
+     * @return Optional<UserSummary> inserted or concurrently inserted user
+     */
+    private Optional<UserSummary> insert(Jwt jwt) {
+        String keycloakId = jwt.getSubject();
+        String email = jwt.getClaimAsString("email");
+        if (email == null || email.isBlank()) {
+            reject(keycloakId, "token has no email claim");
+            return Optional.empty();
+        }
+
+        // Read back in the same read-write transaction, so it is not sent to a lagging replica
+        Inserted result = transactionTemplate.execute(status -> new Inserted(
+                userRepository.insertIfAbsent(keycloakId, name(jwt, email), email, LocalDateTime.now()) > 0,
+                userRepository.findByKeycloakId(keycloakId).map(UserSummary::of)));
+
+        if (result.inserted()) {
+            // The native insert bypasses the entity listeners; added once committed, so a
+            // rolled back or skipped insert leaves no false positive behind
+            emailBloomFilter.add(email);
+            created.increment();
+            log.info("Provisioned user {} from token claims", keycloakId);
+        } else if (result.user().isPresent()) {
+            // Inserted concurrently by another instance
+            existing.increment();
+        } else {
+            reject(keycloakId, "email is already in use");
+        }
+        return result.user();
+    }
+
+    private record Inserted(boolean inserted, Optional<UserSummary> user) {
+    }
+
+    /**
+     * Counts a subject that cannot be provisioned and skips it until the entry expires
+     *
+     * @param keycloakId Keycloak user ID
+     * @param reason Reason for the log
+     */
+    private void reject(String keycloakId, String reason) {
+        rejectedSubjects.put(keycloakId, Boolean.TRUE);
+        rejected.increment();
+        log.warn("Cannot provision user {}: {}", keycloakId, reason);
+    }
+
+    /**
+     * Gets the display name from the token, falling back to the email
+     *
+     * @param jwt Access token
+     * @param email Email claim
+     * @return String name
+     */
+    private static String name(Jwt jwt, String email) {
+        String name = jwt.getClaimAsString("name");
+        if (name != null && !name.isBlank()) {
+            return name.trim();
+        }
+
+        String givenName = jwt.getClaimAsString("given_name");
+        String familyName = jwt.getClaimAsString("family_name");
+        String fullName = ((givenName == null ? "" : givenName) + " " + (familyName == null ? "" : familyName)).trim();
+        return fullName.isEmpty() ? email : fullName;
+    }
+
+    private static Counter provisioned(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("users.provisioned")
+                .description("Just-in-time provisioning attempts from token claims")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,370 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.repository.ReconciliationStateRepository;
+import com.fintegerllp.authapi.repository.RegistrationOutboxRepository;
+import com.fintegerllp.authapi.repository.UserProfileRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.ReconciliationState;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background worker that finds drift between Keycloak and the users table:
+ * Keycloak users without a users row (a registration that failed after the
+ * Keycloak call and could not be compensated) and users rows whose Keycloak
+ * user is gone.
+ * <p>
+ * Each run checks a slice of both sides and stores where it stopped in
+ * reconciliation_state, so a full sweep spreads over several runs and survives
+ * restarts. Keycloak pages are compared against the table one sorted batch at
+ * a time; local users are looked up in Keycloak one by one. Keycloak calls run
+ * with bounded parallelism on top of the {@link KeycloakCallPolicy} limits, and
+ * a run stops without advancing as soon as Keycloak fails.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reconciliation.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class UserReconciliationWorker {
+
+    private static final String STATE_NAME = "users";
+
+    private final KeycloakService keycloakService;
+    private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final RegistrationOutboxRepository outboxRepository;
+    private final ReconciliationStateRepository stateRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.reconciliation.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.reconciliation.pages-per-run:5}")
+    private int pagesPerRun;
+
+    @Value("${app.reconciliation.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.reconciliation.grace-period-seconds:600}")
+    private long gracePeriodSeconds;
+
+    @Value("${app.reconciliation.lease-seconds:1800}")
+    private long leaseSeconds;
+
+    @Value("${app.reconciliation.repair:false}")
+    private boolean repair;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Result of one run
+     *
+     * @param keycloakChecked Keycloak users compared
+     * @param localChecked Local users looked up in Keycloak
+     * @param keycloakOnly Keycloak users without a users row
+     * @param localOnly Users rows without a Keycloak user
+     * @param repaired Drift that was repaired
+     */
+    public record Result(int keycloakChecked, int localChecked, int keycloakOnly, int localOnly, int repaired) {
+    }
+
+    /**
+     * Runs the next reconciliation slice unless another instance holds the lease
+     */
+    @Scheduled(fixedDelayString = "${app.reconciliation.interval-ms:600000}",
+            initialDelayString = "${app.reconciliation.interval-ms:600000}")
+    public void scheduledRun() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("User reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the next slice of Keycloak users and local users and advances the watermark
+     *
+     * @return Result counts of the run, null if another instance is running
+     */
+    public Result reconcile() {
+        ReconciliationState state = claim();
+        if (state == null) {
+            log.debug("User reconciliation is running elsewhere, skipping");
+            return null;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("user-reconciliation-");
+            executor.setConcurrencyLimit(parallelism);
+            if (virtualThreads) {
+                executor.setVirtualThreads(true);
+            }
+
+            Slice keycloakSlice = reconcileKeycloakUsers(state.getKeycloakOffset(), executor);
+            Slice localSlice = reconcileLocalUsers(state.getLastUserId(), executor);
+
+            state.setKeycloakOffset((int) keycloakSlice.next());
+            state.setLastUserId(localSlice.next());
+            Result result = new Result(keycloakSlice.checked(), localSlice.checked(),
+                    keycloakSlice.drift(), localSlice.drift(), keycloakSlice.repaired() + localSlice.repaired());
+            if (result.keycloakOnly() > 0 || result.localOnly() > 0) {
+                log.warn("User reconciliation found drift: {}", result);
+            } else {
+                log.info("User reconciliation found no drift: {}", result);
+            }
+            outcome = "success";
+            return result;
+        } finally {
+            release(state);
+            sample.stop(Timer.builder("users.reconciliation.runs")
+                    .description("User reconciliation run time")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Position and counts of one side of a run
+     */
+    private record Slice(long next, int checked, int drift, int repaired) {
+    }
+
+    /**
+     * Fetches the next Keycloak pages in parallel and looks each page up in the users table
+     *
+     * @param offset Offset of the first page
+     * @param executor Executor bounding the Keycloak parallelism
+     * @return Slice offset to continue from and counts
+     */
+    private Slice reconcileKeycloakUsers(int offset, SimpleAsyncTaskExecutor executor) {
+        List<CompletableFuture<List<UserRepresentation>>> pages = new ArrayList<>(pagesPerRun);
+        for (int i = 0; i < pagesPerRun; i++) {
+            int first = offset + i * pageSize;
+            pages.add(CompletableFuture.supplyAsync(() -> keycloakService.listUsers(first, pageSize), executor));
+        }
+
+        long graceCutoff = Instant.now().minusSeconds(gracePeriodSeconds).toEpochMilli();
+        int checked = 0;
+        int drift = 0;
+        int repaired = 0;
+        boolean end = false;
+        for (CompletableFuture<List<UserRepresentation>> page : pages) {
+            List<UserRepresentation> users = join(page);
+            if (end) {
+                continue;
+            }
+            checked += users.size();
+            countChecked("keycloak", users.size());
+
+            Set<String> existing = users.isEmpty() ? Set.of() : new HashSet<>(userRepository.findExistingKeycloakIds(
+                    users.stream().map(UserRepresentation::getId).sorted().toList()));
+            for (UserRepresentation user : users) {
+                if (existing.contains(user.getId()) || isRecent(user, graceCutoff)
+                        || (user.getEmail() != null && outboxRepository.existsByEmailIgnoreCase(user.getEmail()))) {
+                    continue;
+                }
+                drift++;
+                if (repairKeycloakOnly(user)) {
+                    repaired++;
+                }
+            }
+            end = users.size() < pageSize;
+        }
+
+        // Wrap around once the end of the list is reached; users added meanwhile are caught next sweep
+        return new Slice(end ? 0 : offset + pagesPerRun * pageSize, checked, drift, repaired);
+    }
+
+    /**
+     * Looks the next local users up in Keycloak in parallel
+     *
+     * @param afterId ID of the last user checked by the previous run
+     * @param executor Executor bounding the Keycloak parallelism
+     * @return Slice ID to continue from and counts
+     */
+    private Slice reconcileLocalUsers(long afterId, SimpleAsyncTaskExecutor executor) {
+        int limit = pagesPerRun * pageSize;
+        List<UserSummary> users = userRepository.findSummariesAfter(afterId, Limit.of(limit));
+
+        List<CompletableFuture<Boolean>> lookups = users.stream()
+                .map(user -> CompletableFuture.supplyAsync(() -> keycloakService.userExists(user.keycloakId()), executor))
+                .toList();
+
+        int drift = 0;
+        int repaired = 0;
+        for (int i = 0; i < users.size(); i++) {
+            if (join(lookups.get(i))) {
+                continue;
+            }
+            drift++;
+            if (repairLocalOnly(users.get(i))) {
+                repaired++;
+            }
+        }
+        countChecked("local", users.size());
+
+        return new Slice(users.size() < limit ? 0 : users.get(users.size() - 1).id(), users.size(), drift, repaired);
+    }
+
+    /**
+     * Reports a Keycloak user without a users row, creating the row when repairing
+     *
+     * @param user Keycloak user
+     * @return boolean true if the row was created
+     */
+    private boolean repairKeycloakOnly(UserRepresentation user) {
+        if (user.getEmail() == null) {
+            // users.email is required, so there is nothing to create the row from
+            log.warn("Keycloak user {} has no users row and no email", user.getId());
+            countDrift("missing_email", "reported");
+            return false;
+        }
+        if (userRepository.existsByEmailIgnoreCase(user.getEmail())) {
+            // Another local user owns the email, this needs a person to look at it
+            log.warn("Keycloak user {} has no users row and its email is taken locally", user.getId());
+            countDrift("email_conflict", "reported");
+            return false;
+        }
+        if (!repair) {
+            log.warn("Keycloak user {} ({}) has no users row", user.getId(), user.getEmail());
+            countDrift("keycloak_only", "reported");
+            return false;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                User saved = userRepository.save(User.builder()
+                        .keycloakId(user.getId())
+                        .name(KeycloakService.displayName(user))
+                        .email(user.getEmail())
+                        .build());
+                userProfileRepository.save(UserProfile.builder()
+                        .user(saved)
+                        .profileData("{}")
+                        .settings("{}")
+                        .build());
+            });
+            log.info("Created missing users row for Keycloak user {}", user.getId());
+            countDrift("keycloak_only", "repaired");
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Registered concurrently, nothing left to repair
+            countDrift("keycloak_only", "failed");
+            return false;
+        }
+    }
+
+    /**
+     * Reports a users row whose Keycloak user is gone, deleting the row when repairing
+     *
+     * @param user Local user
+     * @return boolean true if the row was deleted
+     */
+    private boolean repairLocalOnly(UserSummary user) {
+        if (!repair) {
+            log.warn("User {} has no Keycloak user {}", user.id(), user.keycloakId());
+            countDrift("local_only", "reported");
+            return false;
+        }
+
+        // Deleted through the entities so the caches and the email filter follow
+        transactionTemplate.executeWithoutResult(status -> {
+            userProfileRepository.findByUserId(user.id()).ifPresent(userProfileRepository::delete);
+            userRepository.findById(user.id()).ifPresent(userRepository::delete);
+        });
+        log.info("Deleted user {} whose Keycloak user {} is gone", user.id(), user.keycloakId());
+        countDrift("local_only", "repaired");
+        return true;
+    }
+
+    /**
+     * Takes the lease on the reconciliation state
+     *
+     * @return ReconciliationState claimed state, null if another instance holds it
+     */
+    private ReconciliationState claim() {
+        try {
+            return transactionTemplate.execute(status -> {
+                ReconciliationState state = stateRepository.findById(STATE_NAME)
+                        .orElseGet(() -> ReconciliationState.builder().name(STATE_NAME).build());
+                LocalDateTime now = LocalDateTime.now();
+                if (state.getLockedUntil() != null && state.getLockedUntil().isAfter(now)) {
+                    return null;
+                }
+                state.setLockedUntil(now.plusSeconds(leaseSeconds));
+                return stateRepository.saveAndFlush(state);
+            });
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the watermark and gives up the lease
+     *
+     * @param state Claimed state, with the watermark advanced if the run succeeded
+     */
+    private void release(ReconciliationState state) {
+        state.setLockedUntil(null);
+        transactionTemplate.executeWithoutResult(status -> stateRepository.save(state));
+    }
+
+    private static boolean isRecent(UserRepresentation user, long graceCutoff) {
+        return user.getCreatedTimestamp() != null && user.getCreatedTimestamp() > graceCutoff;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void countChecked(String side, int count) {
+        Counter.builder("users.reconciliation.checked")
+                .description("Users compared by the reconciliation")
+                .tag("side", side)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    private void countDrift(String type, String action) {
+        Counter.builder("users.reconciliation.drift")
+                .description("Drift between Keycloak and the users table found by the reconciliation")
+                .tag("type", type)
+                .tag("action", action)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,108 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.dto.AdminUserDto;
+import com.fintegerllp.authapi.dto.UserPageDto;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.UserSearchCriteria;
+import com.fintegerllp.authapi.repository.projection.UserListItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Admin listing of local users. Pages are read with keyset pagination on
+ * (created_at, id): the cursor carries the last row of the previous page and
+ * the next query seeks past it in the index, so every page costs the same
+ * however deep the client has paged.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchService {
+
+    private static final String CURSOR_VERSION = "v1";
+
+    private final UserRepository userRepository;
+
+    @Value("${app.admin.users.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.admin.users.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * Gets one page of users matching the criteria, newest first
+     *
+     * @param criteria Filters
+     * @param cursor Cursor returned with the previous page, null for the first page
+     * @param limit Page size, null for the default; capped at the maximum page size
+     * @return UserPageDto users and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor or the page size is invalid
+     */
+    @Transactional(readOnly = true)
+    public UserPageDto searchUsers(UserSearchCriteria criteria, String cursor, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        pageSize = Math.min(pageSize, maxPageSize);
+
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            afterCreatedAt = LocalDateTime.parse(position[1]);
+            afterId = Long.parseLong(position[2]);
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        List<UserListItem> rows = userRepository.search(criteria, afterCreatedAt, afterId, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        return UserPageDto.builder()
+                .users(rows.stream().map(this::mapToDto).toList())
+                .nextCursor(hasNext ? encodeCursor(rows.get(rows.size() - 1)) : null)
+                .build();
+    }
+
+    private String encodeCursor(UserListItem last) {
+        String position = CURSOR_VERSION + "|" + last.createdAt() + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (position.length != 3 || !CURSOR_VERSION.equals(position[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(position[1]);
+            Long.parseLong(position[2]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private AdminUserDto mapToDto(UserListItem user) {
+        return AdminUserDto.builder()
+                .id(user.id())
+                .keycloakId(user.keycloakId())
+                .name(user.name())
+                .email(user.email())
+                .createdAt(user.createdAt())
+                .updatedAt(user.updatedAt())
+                .build();
+    }
+}
@@ -1,26 +1,43 @@
 package com.fintegerllp.authapi.service;
 
 
+import com.fintegerllp.authapi.cache.EmailBloomFilter;
+import com.fintegerllp.authapi.cache.UserCache;
+import com.fintegerllp.authapi.dto.ImportRowResultDto;
+import com.fintegerllp.authapi.dto.ImportSummaryDto;
+import com.fintegerllp.authapi.dto.RawUserProfileDto;
 import com.fintegerllp.authapi.dto.RegistrationDto;
 import com.fintegerllp.authapi.dto.UserDto;
 import com.fintegerllp.authapi.dto.UserProfileDto;
+import com.fintegerllp.authapi.exception.EmailAlreadyExistsException;
+import com.fintegerllp.authapi.exception.PreconditionFailedException;
+import com.fintegerllp.authapi.exception.ProfileNotFoundException;
 import com.fintegerllp.authapi.repository.model.User;
 import com.fintegerllp.authapi.repository.model.UserProfile;
+import com.fintegerllp.authapi.repository.projection.ProfileView;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
 import com.fintegerllp.authapi.repository.UserProfileRepository;
 import com.fintegerllp.authapi.repository.UserRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -29,8 +46,11 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final UserProfileRepository userProfileRepository;
-    private final KeycloakService keycloakService;
-    private final ObjectMapper objectMapper;
+    private final RegistrationPipeline registrationPipeline;
+    private final UserImportService userImportService;
+    private final UserCache userCache;
+    private final EmailBloomFilter emailBloomFilter;
+    private final ProfileJsonCodec profileJson;
 
     /**
      * Registers a new user
@@ -38,63 +58,42 @@ public class UserService {
      * @param registrationDto Registration data
      * @return UserDto User data
      */
-    @Transactional
     public UserDto registerUser(RegistrationDto registrationDto) {
-        // Check if user already exists
-        if (userRepository.existsByEmail(registrationDto.getEmail())) {
-            throw new RuntimeException("Email already in use");
-        }
-
-        // Parse name into first and last name
-        String[] nameParts = registrationDto.getName().split(" ", 2);
-        String firstName = nameParts[0];
-        String lastName = nameParts.length > 1 ? nameParts[1] : "";
-
-        // Create user in Keycloak
-        String keycloakId = keycloakService.createUser(
-                registrationDto.getEmail(),
-                registrationDto.getEmail(),
-                firstName,
-                lastName,
-                registrationDto.getPassword()
-        );
-
-        if (keycloakId == null) {
-            throw new RuntimeException("Failed to create user in Keycloak");
+        // Check if user already exists, only emails the filter may know reach the database
+        if (emailBloomFilter.mightContain(registrationDto.getEmail())) {
+            if (userRepository.existsByEmail(registrationDto.getEmail())) {
+                throw new EmailAlreadyExistsException("Email already in use");
+            }
+            emailBloomFilter.recordFalsePositive();
         }
 
-        // Create user in database
-        User user = User.builder()
-                .keycloakId(keycloakId)
-                .name(registrationDto.getName())
-                .email(registrationDto.getEmail())
-                .build();
-
-        User savedUser = userRepository.save(user);
-
-        // Create empty profile
-        UserProfile profile = UserProfile.builder()
-                .user(savedUser)
-                .profileData("{}")
-                .settings("{}")
-                .build();
-
-        userProfileRepository.save(profile);
+        // Keycloak is called outside of any database transaction
+        User savedUser = registrationPipeline.register(registrationDto);
 
         // Return user DTO
         return mapUserToDto(savedUser);
     }
 
+    /**
+     * Bulk imports users
+     *
+     * @param input NDJSON or CSV stream of registration rows
+     * @param csv true if the input is CSV
+     * @param sink Receives the result of every row
+     * @return ImportSummaryDto Import summary
+     */
+    public ImportSummaryDto importUsers(InputStream input, boolean csv, Consumer<ImportRowResultDto> sink) throws IOException {
+        return userImportService.importUsers(input, csv, sink);
+    }
+
     /**
      * Gets the current authenticated user
      *
      * @return UserDto User data
      */
+    @Transactional(readOnly = true)
     public UserDto getCurrentUser() {
-        String keycloakId = getCurrentKeycloakId();
-
-        User user = userRepository.findByKeycloakId(keycloakId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserSummary user = getCurrentUserSummary();
 
         return mapUserToDto(user);
     }
@@ -104,20 +103,19 @@ public class UserService {
      *
      * @return UserProfileDto User profile data
      */
+    @Transactional(readOnly = true)
     public UserProfileDto getUserProfile() {
-        User user = getCurrentUserEntity();
-
-        UserProfile profile = userProfileRepository.findByUserId(user.getId())
-                .orElseThrow(() -> new RuntimeException("User profile not found"));
+        ProfileView profile = getCurrentProfileView();
 
         try {
-            Map<String, Object> profileData = objectMapper.readValue(profile.getProfileData(), Map.class);
-            Map<String, Object> settings = objectMapper.readValue(profile.getSettings(), Map.class);
+            Map<String, Object> profileData = profileJson.readMap(profile.profileData());
+            Map<String, Object> settings = profileJson.readMap(profile.settings());
 
             return UserProfileDto.builder()
-                    .userId(user.getId())
+                    .userId(profile.userId())
                     .profileData(profileData)
                     .settings(settings)
+                    .etag(profileETag(profile.userId(), profile.updatedAt()))
                     .build();
         } catch (JsonProcessingException e) {
             log.error("Error parsing profile JSON: {}", e.getMessage());
@@ -125,6 +123,21 @@ public class UserService {
         }
     }
 
+    /**
+     * Gets the current ETag of the user profile without loading the profile data
+     *
+     * @return String strong ETag
+     */
+    @Transactional(readOnly = true)
+    public String getUserProfileETag() {
+        UserSummary user = getCurrentUserSummary();
+
+        LocalDateTime updatedAt = userProfileRepository.findUpdatedAtByUserId(user.id())
+                .orElseThrow(() -> new ProfileNotFoundException("User profile not found"));
+
+        return profileETag(user.id(), updatedAt);
+    }
+
     /**
      * Updates a user profile
      *
@@ -133,29 +146,40 @@ public class UserService {
      */
     @Transactional
     public UserProfileDto updateUserProfile(UserProfileDto profileDto) {
-        User user = getCurrentUserEntity();
+        return updateUserProfile(profileDto, null);
+    }
 
-        UserProfile profile = userProfileRepository.findByUserId(user.getId())
-                .orElseThrow(() -> new RuntimeException("User profile not found"));
+    /**
+     * Updates a user profile if it still matches the given If-Match header
+     *
+     * @param profileDto Profile data
+     * @param ifMatch If-Match header value, null to update unconditionally
+     * @return UserProfileDto Updated profile data
+     */
+    @Transactional
+    public UserProfileDto updateUserProfile(UserProfileDto profileDto, String ifMatch) {
+        UserSummary user = getCurrentUserSummary();
+        UserProfile profile = loadProfileForUpdate(user, ifMatch);
 
         try {
             // Update profile data
-            String profileDataJson = objectMapper.writeValueAsString(profileDto.getProfileData());
-            String settingsJson = objectMapper.writeValueAsString(profileDto.getSettings());
+            String profileDataJson = profileJson.write(profileDto.getProfileData());
+            String settingsJson = profileJson.write(profileDto.getSettings());
 
             profile.setProfileData(profileDataJson);
             profile.setSettings(settingsJson);
 
-            UserProfile savedProfile = userProfileRepository.save(profile);
+            UserProfile savedProfile = userProfileRepository.saveAndFlush(profile);
 
             // Return updated profile DTO
-            Map<String, Object> updatedProfileData = objectMapper.readValue(savedProfile.getProfileData(), Map.class);
-            Map<String, Object> updatedSettings = objectMapper.readValue(savedProfile.getSettings(), Map.class);
+            Map<String, Object> updatedProfileData = profileJson.readMap(savedProfile.getProfileData());
+            Map<String, Object> updatedSettings = profileJson.readMap(savedProfile.getSettings());
 
             return UserProfileDto.builder()
-                    .userId(user.getId())
+                    .userId(user.id())
                     .profileData(updatedProfileData)
                     .settings(updatedSettings)
+                    .etag(profileETag(user.id(), savedProfile.getUpdatedAt()))
                     .build();
         } catch (JsonProcessingException e) {
             log.error("Error serializing profile JSON: {}", e.getMessage());
@@ -163,6 +187,100 @@ public class UserService {
         }
     }
 
+    /**
+     * Gets a user profile with profile_data and settings as raw JSON
+     *
+     * @return RawUserProfileDto User profile data
+     */
+    @Transactional(readOnly = true)
+    public RawUserProfileDto getRawUserProfile() {
+        ProfileView profile = getCurrentProfileView();
+
+        // The jsonb columns already hold valid JSON, pass it through untouched
+        return RawUserProfileDto.builder()
+                .userId(profile.userId())
+                .profileData(profile.profileData())
+                .settings(profile.settings())
+                .etag(profileETag(profile.userId(), profile.updatedAt()))
+                .build();
+    }
+
+    /**
+     * Updates a user profile from raw JSON if it still matches the given If-Match header
+     *
+     * @param profileDto Profile data, validated but not rebuilt by the deserializer
+     * @param ifMatch If-Match header value, null to update unconditionally
+     * @return RawUserProfileDto Updated profile data
+     */
+    @Transactional
+    public RawUserProfileDto updateRawUserProfile(RawUserProfileDto profileDto, String ifMatch) {
+        UserSummary user = getCurrentUserSummary();
+        UserProfile profile = loadProfileForUpdate(user, ifMatch);
+
+        profile.setProfileData(profileDto.getProfileData() != null ? profileDto.getProfileData() : "null");
+        profile.setSettings(profileDto.getSettings() != null ? profileDto.getSettings() : "null");
+
+        UserProfile savedProfile = userProfileRepository.saveAndFlush(profile);
+
+        return RawUserProfileDto.builder()
+                .userId(user.id())
+                .profileData(savedProfile.getProfileData())
+                .settings(savedProfile.getSettings())
+                .etag(profileETag(user.id(), savedProfile.getUpdatedAt()))
+                .build();
+    }
+
+    /**
+     * Applies a JSON Merge Patch to the user profile in a single SQL statement
+     *
+     * @param patch Merge patch with optional profileData and settings members
+     * @param ifMatch If-Match header value, null to update unconditionally
+     * @return String ETag of the new profile version
+     */
+    @Transactional
+    public String patchUserProfile(JsonNode patch, String ifMatch) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+
+        UserSummary user = getCurrentUserSummary();
+        JsonNode profileDataPatch = mergePatchMember(patch, "profileData");
+        JsonNode settingsPatch = mergePatchMember(patch, "settings");
+        LocalDateTime updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+
+        int updated = userProfileRepository.mergePatch(user.id(), profileDataPatch, settingsPatch,
+                updatedAt, ifMatch == null ? null : eTagTimestamps(ifMatch, user.id()));
+
+        if (updated == 0) {
+            if (userProfileRepository.findUpdatedAtByUserId(user.id()).isEmpty()) {
+                throw new ProfileNotFoundException("User profile not found");
+            }
+            throw new PreconditionFailedException("Profile has been modified");
+        }
+        return profileETag(user.id(), updatedAt);
+    }
+
+    /**
+     * Loads the profile to update, checking the If-Match header if present
+     *
+     * @param user Current user
+     * @param ifMatch If-Match header value, null to skip the check
+     * @return UserProfile profile entity
+     */
+    private UserProfile loadProfileForUpdate(UserSummary user, String ifMatch) {
+        // Lock the row when the caller edits a specific version
+        Optional<UserProfile> existing = ifMatch == null
+                ? userProfileRepository.findByUserId(user.id())
+                : userProfileRepository.findByUserIdForUpdate(user.id());
+        UserProfile profile = existing
+                .orElseThrow(() -> new ProfileNotFoundException("User profile not found"));
+
+        if (ifMatch != null && !eTagMatches(ifMatch, profileETag(user.id(), profile.getUpdatedAt()))) {
+            throw new PreconditionFailedException("Profile has been modified");
+        }
+        return profile;
+    }
+
     /**
      * Gets the current Keycloak user ID from security context
      *
@@ -179,17 +297,108 @@ public class UserService {
     }
 
     /**
-     * Gets the current user entity
+     * Gets the current user's users columns, without the profile
      *
-     * @return User entity
+     * @return UserSummary current user
      */
-    private User getCurrentUserEntity() {
+    private UserSummary getCurrentUserSummary() {
         String keycloakId = getCurrentKeycloakId();
 
-        return userRepository.findByKeycloakId(keycloakId)
+        // Loaded through the natural id, so a UserCache miss is still served by the second-level cache
+        return userCache.get(keycloakId, id -> userRepository.findByKeycloakId(id).map(UserSummary::of))
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
+    /**
+     * Gets the current user's profile together with the user ID in one query
+     *
+     * @return ProfileView current profile
+     */
+    private ProfileView getCurrentProfileView() {
+        return userProfileRepository.findViewByKeycloakId(getCurrentKeycloakId())
+                .orElseThrow(() -> new ProfileNotFoundException("User profile not found"));
+    }
+
+    /**
+     * Builds the strong ETag of a profile version
+     *
+     * @param userId User ID
+     * @param updatedAt Profile update timestamp
+     * @return String quoted ETag
+     */
+    private String profileETag(Long userId, LocalDateTime updatedAt) {
+        long micros = 0;
+        if (updatedAt != null) {
+            // Round to microseconds the way the timestamp is stored in Postgres
+            LocalDateTime stored = updatedAt.plusNanos(500).truncatedTo(ChronoUnit.MICROS);
+            micros = stored.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + stored.getNano() / 1_000;
+        }
+        return "\"" + userId + "-" + Long.toHexString(micros) + "\"";
+    }
+
+    /**
+     * Gets the patch of one profile column from a merge patch document
+     *
+     * @param patch Merge patch document
+     * @param member profileData or settings
+     * @return JsonNode column patch, JSON null to reset the column, null if the column is not patched
+     */
+    private JsonNode mergePatchMember(JsonNode patch, String member) {
+        if (!patch.has(member)) {
+            return null;
+        }
+        // A null member is passed on as is, it resets the column to an empty object
+        return patch.get(member);
+    }
+
+    /**
+     * Decodes the profile timestamps named by an If-Match header
+     *
+     * @param ifMatch If-Match header value
+     * @param userId User ID the ETags must belong to
+     * @return List<LocalDateTime> matching timestamps, null if the header is a wildcard
+     */
+    private List<LocalDateTime> eTagTimestamps(String ifMatch, Long userId) {
+        String prefix = "\"" + userId + "-";
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        for (String candidate : ifMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*")) {
+                return null;
+            }
+            if (trimmed.startsWith(prefix) && trimmed.endsWith("\"") && trimmed.length() > prefix.length() + 1) {
+                try {
+                    long micros = Long.parseLong(trimmed.substring(prefix.length(), trimmed.length() - 1), 16);
+                    timestamps.add(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC));
+                } catch (NumberFormatException e) {
+                    // Not one of our ETags, it can never match
+                }
+            }
+        }
+        if (timestamps.isEmpty()) {
+            throw new PreconditionFailedException("Profile has been modified");
+        }
+        return timestamps;
+    }
+
+    /**
+     * Checks an If-Match header against an ETag using strong comparison
+     *
+     * @param ifMatch If-Match header value
+     * @param etag Current ETag
+     * @return boolean true if the header matches
+     */
+    private boolean eTagMatches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Maps a user entity to a DTO
      *
@@ -203,4 +412,18 @@ public class UserService {
                 .email(user.getEmail())
                 .build();
     }
+
+    /**
+     * Maps a user projection to a DTO
+     *
+     * @param user User projection
+     * @return UserDto User DTO
+     */
+    private UserDto mapUserToDto(UserSummary user) {
+        return UserDto.builder()
+                .id(user.id())
+                .name(user.name())
+                .email(user.email())
+                .build();
+    }
 }
\ No newline at end of file
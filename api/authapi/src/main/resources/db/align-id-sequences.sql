@@ -0,0 +1,7 @@
+-- One-off migration for databases created before users and user_profiles
+-- switched from IDENTITY to pooled sequence IDs (allocationSize = 50).
+-- Run once after the first start of the new version, before serving traffic,
+-- so the sequences created by Hibernate start above the existing IDs.
+
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM users));
+SELECT setval('user_profiles_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM user_profiles));
@@ -0,0 +1,8 @@
+-- Indexes for the case-insensitive prefix filters of GET /admin/users.
+-- Hibernate creates the (created_at, id) and updated_at indexes declared on
+-- the entity, but not expression indexes. text_pattern_ops lets
+-- lower(...) LIKE 'prefix%' use the index under a non-C collation.
+-- CONCURRENTLY avoids locking writes; run outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_lower_prefix ON users (lower(email) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_lower_prefix ON users (lower(name) text_pattern_ops);
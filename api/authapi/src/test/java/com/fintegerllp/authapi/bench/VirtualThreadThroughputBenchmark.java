@@ -0,0 +1,176 @@
+package com.fintegerllp.authapi.bench;
+
+import com.fintegerllp.authapi.service.KeycloakCallPolicy;
+import com.fintegerllp.authapi.service.KeycloakService;
+import com.fintegerllp.authapi.support.KeycloakStandIn;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares a Tomcat-sized platform thread pool with virtual threads while
+ * Keycloak is slow. A share of the tasks creates users through the real admin
+ * client against {@link KeycloakStandIn}, the rest stand for short profile
+ * reads. Reports throughput and the latency of the short tasks.
+ *
+ * Run with: mvn -Pvirtual-threads test -Dtest=VirtualThreadThroughputBenchmark -Dbench=true
+ */
+@EnabledIfSystemProperty(named = "bench", matches = "true")
+class VirtualThreadThroughputBenchmark {
+
+    private static final int TASKS = Integer.getInteger("bench.tasks", 5000);
+    private static final int SLOW_EVERY = Integer.getInteger("bench.slow-every", 4);
+    private static final long KEYCLOAK_LATENCY_MS = Long.getLong("bench.keycloak-latency-ms", 500);
+    private static final long FAST_TASK_MS = 2;
+    private static final int PLATFORM_THREADS = 200;
+
+    private static KeycloakStandIn standIn;
+    private static Keycloak keycloak;
+    private static KeycloakService platformService;
+    private static KeycloakService virtualService;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        standIn = new KeycloakStandIn(KEYCLOAK_LATENCY_MS);
+        keycloak = KeycloakBuilder.builder()
+                .serverUrl(standIn.getServerUrl())
+                .realm("master")
+                .clientId("admin-cli")
+                .username("admin")
+                .password("admin")
+                .resteasyClient(((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                        .connectionPoolSize(TASKS)
+                        .maxPooledPerRoute(TASKS)
+                        .build())
+                .build();
+        platformService = keycloakService(false);
+        virtualService = Runtime.version().feature() >= 21 ? keycloakService(true) : null;
+        // Fetch the admin token up front, as KeycloakTokenRefresher does in the application
+        keycloak.tokenManager().grantToken();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        keycloak.close();
+        standIn.close();
+    }
+
+    @Test
+    void platformThreads() throws Exception {
+        run("platform(" + PLATFORM_THREADS + ")", Executors.newFixedThreadPool(PLATFORM_THREADS), platformService);
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        ExecutorService executor;
+        try {
+            // Resolved reflectively so the class still compiles on the default Java 17 build
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            System.out.println("virtual threads need Java 21, run with -Pvirtual-threads");
+            return;
+        }
+        run("virtual", executor, virtualService);
+    }
+
+    private void run(String mode, ExecutorService executor, KeycloakService keycloakService) throws Exception {
+        long start = System.nanoTime();
+        List<Future<Long>> fastTasks = new ArrayList<>();
+        List<Future<Long>> slowTasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                if (i % SLOW_EVERY == 0) {
+                    String email = "bench" + i + "@example.com";
+                    slowTasks.add(executor.submit(timedFrom(System.nanoTime(), () ->
+                            assertNotNull(keycloakService.createUser(email, email, "Bench", "User", "secret")))));
+                } else {
+                    fastTasks.add(executor.submit(timedFrom(System.nanoTime(), () -> sleep(FAST_TASK_MS))));
+                }
+            }
+
+            long[] fastLatencies = collect(fastTasks);
+            collect(slowTasks);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(fastLatencies);
+            System.out.printf("%-14s tasks=%d keycloak-latency=%dms throughput=%.0f/s fast p50=%.1fms p99=%.1fms%n",
+                    mode, TASKS, KEYCLOAK_LATENCY_MS, TASKS / seconds,
+                    percentile(fastLatencies, 0.50) / 1e6, percentile(fastLatencies, 0.99) / 1e6);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Creates a KeycloakService whose policy does not limit the benchmark
+     */
+    private static KeycloakService keycloakService(boolean virtualThreads) {
+        TimeLimiterRegistry timeLimiters = TimeLimiterRegistry.ofDefaults();
+        timeLimiters.addConfiguration("keycloak", TimeLimiterConfig.custom().timeoutDuration(Duration.ofMinutes(1)).build());
+        KeycloakCallPolicy callPolicy = new KeycloakCallPolicy(
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(TASKS).build()),
+                RetryRegistry.ofDefaults(),
+                timeLimiters,
+                new SimpleMeterRegistry(),
+                virtualThreads);
+        KeycloakService keycloakService = new KeycloakService(keycloak, callPolicy);
+        ReflectionTestUtils.setField(keycloakService, "realm", "bench");
+        return keycloakService;
+    }
+
+    /**
+     * Times a task from submission, so time spent queued for a thread is included
+     */
+    private static Callable<Long> timedFrom(long submitted, Runnable task) {
+        return () -> {
+            task.run();
+            return System.nanoTime() - submitted;
+        };
+    }
+
+    private static long[] collect(List<Future<Long>> futures) throws Exception {
+        long[] latencies = new long[futures.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = futures.get(i).get();
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fintegerllp.authapi.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks when admin tokens of different lifetimes are refreshed, with the
+ * client's default 30 second refresh window.
+ */
+class KeycloakTokenRefresherTest {
+
+    private static final long SKEW_SECONDS = 30;
+
+    @Test
+    void oneMinuteTokenIsRefreshedOnceEveryHalfLifetime() {
+        assertEquals(30, KeycloakTokenRefresher.refreshDelaySeconds(60, SKEW_SECONDS));
+    }
+
+    @Test
+    void longLivedTokenIsRefreshedThreeQuartersIn() {
+        assertEquals(225, KeycloakTokenRefresher.refreshDelaySeconds(300, SKEW_SECONDS));
+    }
+
+    @Test
+    void tokenShorterThanTheSkewIsNotRefreshedOnEveryCheck() {
+        assertEquals(10, KeycloakTokenRefresher.refreshDelaySeconds(20, SKEW_SECONDS));
+        assertEquals(1, KeycloakTokenRefresher.refreshDelaySeconds(1, SKEW_SECONDS));
+    }
+}
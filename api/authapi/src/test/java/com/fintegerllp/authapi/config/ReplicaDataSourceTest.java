@@ -0,0 +1,140 @@
+package com.fintegerllp.authapi.config;
+
+import com.fintegerllp.authapi.support.LocalBackends;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.ServerSocket;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Routes transactions over two embedded Postgres servers, the shared one as
+ * the primary and a second one as the replica, and checks which server each
+ * transaction ends up on by its port.
+ */
+class ReplicaDataSourceTest {
+
+    private static EmbeddedPostgres replicaPostgres;
+
+    private HikariDataSource primary;
+    private ReplicaDataSource replicaDataSource;
+    private ReadYourWritesTracker readYourWrites;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void startReplica() throws Exception {
+        replicaPostgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopReplica() throws Exception {
+        replicaPostgres.close();
+    }
+
+    @BeforeEach
+    void createPrimary() {
+        primary = pool("primary", LocalBackends.postgres().getPort());
+        readYourWrites = new ReadYourWritesTracker(60_000, 100);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void close() {
+        SecurityContextHolder.clearContext();
+        if (replicaDataSource != null) {
+            replicaDataSource.close();
+        }
+        primary.close();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToTheReplica() {
+        replicaDataSource = replicaDataSource(replicaPostgres.getPort());
+
+        assertEquals(replicaPostgres.getPort(), serverPort(true));
+        assertEquals(LocalBackends.postgres().getPort(), serverPort(false));
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToThePrimaryWhenTheReplicaIsDown() throws Exception {
+        int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+        replicaDataSource = replicaDataSource(unusedPort);
+
+        assertEquals(LocalBackends.postgres().getPort(), serverPort(true));
+        // Taken out of rotation, so the next read does not wait on it again
+        assertEquals(0, meterRegistry.get("datasource.replicas.healthy").gauge().value());
+        assertEquals(LocalBackends.postgres().getPort(), serverPort(true));
+        assertEquals(2, meterRegistry.get("datasource.reads").tag("reason", "fallback").counter().count());
+    }
+
+    @Test
+    void subjectThatJustWroteReadsFromThePrimary() {
+        replicaDataSource = replicaDataSource(replicaPostgres.getPort());
+        authenticate("writer");
+        readYourWrites.recordWrite("writer");
+
+        assertEquals(LocalBackends.postgres().getPort(), serverPort(true));
+
+        authenticate("reader");
+        assertEquals(replicaPostgres.getPort(), serverPort(true));
+    }
+
+    @Test
+    void otherCredentialsAreNotSupported() {
+        replicaDataSource = replicaDataSource(replicaPostgres.getPort());
+
+        assertThrows(SQLFeatureNotSupportedException.class, () -> replicaDataSource.getConnection("other", "secret"));
+    }
+
+    private ReplicaDataSource replicaDataSource(int replicaPort) {
+        HikariDataSource replica = pool("replica-0", replicaPort);
+        replica.setReadOnly(true);
+        replica.setInitializationFailTimeout(-1);
+        return new ReplicaDataSource(primary, List.of(replica), readYourWrites, 10, meterRegistry);
+    }
+
+    private int serverPort(boolean readOnly) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject("select inet_server_port()", Integer.class));
+    }
+
+    private static void authenticate(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(subject).build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    private static HikariDataSource pool(String name, int port) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:postgresql://localhost:" + port + "/postgres");
+        pool.setUsername("postgres");
+        pool.setMaximumPoolSize(2);
+        pool.setConnectionTimeout(250);
+        return pool;
+    }
+}
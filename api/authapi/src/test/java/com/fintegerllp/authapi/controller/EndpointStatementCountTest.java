@@ -0,0 +1,147 @@
+package com.fintegerllp.authapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.support.KeycloakStandIn;
+import com.fintegerllp.authapi.support.LocalBackends;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Counts the SQL statements each user endpoint sends to Postgres, so a change
+ * that brings back the profile load on /auth/user or a second lookup on the
+ * profile endpoints fails here.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "app.registration.outbox.poll-interval-ms=3600000"
+})
+class EndpointStatementCountTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private Statistics statistics;
+    private String token;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @BeforeEach
+    void registerUser() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        String email = "count-" + UUID.randomUUID() + "@example.com";
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                        "name", "Statement Count",
+                        "email", email,
+                        "password", "Passw0rd!")))));
+        assertEquals(201, response.statusCode(), response.body());
+
+        KeycloakStandIn keycloak = LocalBackends.keycloak();
+        token = keycloak.issueToken("fintegerllp", keycloak.getUserId(email), email, List.of("USER"));
+    }
+
+    @Test
+    void currentUserReadsOnlyTheUsersRowOnce() throws Exception {
+        assertStatements(1, 200, get("/auth/user"));
+        // Served from the user cache
+        assertStatements(0, 200, get("/auth/user"));
+    }
+
+    @Test
+    void profileIsReadWithOneKeyedQuery() throws Exception {
+        assertStatements(1, 200, get("/users/profile"));
+    }
+
+    @Test
+    void notModifiedProfileReadsOnlyTheTimestamp() throws Exception {
+        String etag = send(get("/users/profile")).headers().firstValue("ETag").orElseThrow();
+        send(get("/auth/user"));
+
+        assertStatements(1, 304, authorized(uri("/users/profile")).header("If-None-Match", etag).GET());
+    }
+
+    @Test
+    void profileUpdateSelectsAndUpdatesTheProfileRow() throws Exception {
+        send(get("/auth/user"));
+
+        assertStatements(2, 200, authorized(uri("/users/profile"))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"profileData\":{\"city\":\"Dubai\"},\"settings\":{}}")));
+    }
+
+    @Test
+    void profilePatchIsOneUpdate() throws Exception {
+        send(get("/auth/user"));
+
+        assertStatements(1, 204, patch("{\"settings\":{\"theme\":\"dark\"}}"));
+    }
+
+    @Test
+    void profilePatchWithNullMemberResetsTheColumnInOneUpdate() throws Exception {
+        send(patch("{\"settings\":{\"theme\":\"dark\"}}"));
+
+        assertStatements(1, 204, patch("{\"settings\":null}"));
+        HttpResponse<String> profile = send(get("/users/profile"));
+        assertEquals(OBJECT_MAPPER.createObjectNode(), OBJECT_MAPPER.readTree(profile.body()).path("data").path("settings"));
+    }
+
+    private void assertStatements(long expected, int expectedStatus, HttpRequest.Builder request) throws Exception {
+        statistics.clear();
+        HttpResponse<String> response = send(request);
+        assertEquals(expectedStatus, response.statusCode(), response.body());
+        assertEquals(expected, statistics.getPrepareStatementCount(),
+                "SQL statements for " + request.build().method() + " " + request.build().uri());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder patch(String mergePatch) {
+        return authorized(uri("/users/profile"))
+                .header("Content-Type", "application/merge-patch+json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(mergePatch));
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return authorized(uri(path)).GET();
+    }
+
+    private HttpRequest.Builder authorized(URI uri) {
+        return HttpRequest.newBuilder(uri).header("Authorization", "Bearer " + token);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api" + path);
+    }
+}
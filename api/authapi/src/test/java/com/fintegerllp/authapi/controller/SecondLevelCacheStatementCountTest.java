@@ -0,0 +1,152 @@
+package com.fintegerllp.authapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.cache.UserCache;
+import com.fintegerllp.authapi.repository.UserProfileRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import com.fintegerllp.authapi.support.KeycloakStandIn;
+import com.fintegerllp.authapi.support.LocalBackends;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the SQL statements of /auth/user with the Hibernate second-level
+ * cache on, after the user cache has dropped the entry, so the natural-id and
+ * entity regions have to serve the read, and checks that native profile
+ * writes evict only their own rows.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.cache.hibernate.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "app.registration.outbox.poll-interval-ms=3600000"
+})
+class SecondLevelCacheStatementCountTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private Statistics statistics;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @BeforeEach
+    void statistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void repeatedUserReadIsServedFromTheSecondLevelCache() throws Exception {
+        String email = register();
+        String subject = LocalBackends.keycloak().getUserId(email);
+        String token = token(email);
+        // The insert already cached the row, start from a cold second-level cache
+        entityManagerFactory.getCache().evictAll();
+
+        assertStatements(1, token);
+        userCache.evict(subject);
+        assertStatements(0, token);
+    }
+
+    @Test
+    void profilePatchEvictsOnlyThePatchedProfile() throws Exception {
+        String email = register();
+        String otherEmail = register();
+        Long profileId = profileId(email);
+        Long otherProfileId = profileId(otherEmail);
+        Cache cache = entityManagerFactory.getCache();
+        assertTrue(cache.contains(UserProfile.class, profileId));
+        assertTrue(cache.contains(User.class, userRepository.findByEmail(email).orElseThrow().getId()));
+
+        HttpResponse<String> patched = send(authorized(uri("/users/profile"), token(otherEmail))
+                .header("Content-Type", "application/merge-patch+json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"settings\":{\"theme\":\"dark\"}}")));
+        assertEquals(204, patched.statusCode(), patched.body());
+
+        assertFalse(cache.contains(UserProfile.class, otherProfileId));
+        assertTrue(cache.contains(UserProfile.class, profileId));
+        assertTrue(cache.contains(User.class, userRepository.findByEmail(email).orElseThrow().getId()));
+    }
+
+    private Long profileId(String email) {
+        Long userId = userRepository.findByEmail(email).orElseThrow().getId();
+        return userProfileRepository.findByUserId(userId).orElseThrow().getId();
+    }
+
+    private String register() throws Exception {
+        String email = "l2-" + UUID.randomUUID() + "@example.com";
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                        "name", "Second Level",
+                        "email", email,
+                        "password", "Passw0rd!")))));
+        assertEquals(201, response.statusCode(), response.body());
+        return email;
+    }
+
+    private String token(String email) {
+        KeycloakStandIn keycloak = LocalBackends.keycloak();
+        return keycloak.issueToken("fintegerllp", keycloak.getUserId(email), email, List.of("USER"));
+    }
+
+    private void assertStatements(long expected, String token) throws Exception {
+        statistics.clear();
+        HttpResponse<String> response = send(authorized(uri("/auth/user"), token).GET());
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL statements for GET /auth/user");
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder authorized(URI uri, String token) {
+        return HttpRequest.newBuilder(uri).header("Authorization", "Bearer " + token);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api" + path);
+    }
+}
@@ -0,0 +1,282 @@
+package com.fintegerllp.authapi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.support.KeycloakStandIn;
+import com.fintegerllp.authapi.support.LocalBackends;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test of /auth/register, /auth/user and /users/profile. The
+ * application runs against an embedded Postgres and a local Keycloak stand-in,
+ * so it needs no network or docker. Requests are sent at a fixed arrival rate
+ * and latency is measured from the intended send time, so a stalled server
+ * shows up in the percentiles instead of slowing the load down.
+ *
+ * Run with: mvn test -Dtest=AuthApiLoadTest -Dloadtest=true
+ * Tune with -Dloadtest.rate, -Dloadtest.duration-seconds, -Dloadtest.mix=register=10,user=45,profile=45,
+ * -Dloadtest.keycloak-latency-ms, -Dloadtest.keycloak-error-rate and gate with -Dloadtest.max-p99-ms.
+ * The summary table is logged and the results are written to target/loadtest-result.json.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Keep logging off the measured path
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN",
+        "logging.level.org.springframework.security=WARN",
+        "logging.level.org.keycloak=WARN",
+        "logging.level.io.zonky=WARN",
+        "logging.level.com.fintegerllp.authapi.loadtest=INFO"
+})
+@Slf4j
+class AuthApiLoadTest {
+
+    private static final String REALM = "fintegerllp";
+    private static final int RATE = Integer.getInteger("loadtest.rate", 200);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private static final int SEED_USERS = Integer.getInteger("loadtest.seed-users", 200);
+    private static final String MIX = System.getProperty("loadtest.mix", "register=10,user=45,profile=45");
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private static final long MAX_P99_MS = Long.getLong("loadtest.max-p99-ms", 0);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static KeycloakStandIn keycloak;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<String> tokens = new ArrayList<>();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+        keycloak = LocalBackends.keycloak();
+        keycloak.setLatencyMs(Long.getLong("loadtest.keycloak-latency-ms", 20));
+        keycloak.setLatencyJitterMs(Long.getLong("loadtest.keycloak-jitter-ms", 20));
+        keycloak.setErrorRate(Double.parseDouble(System.getProperty("loadtest.keycloak-error-rate", "0")));
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        seedUsers();
+        List<Endpoint> mix = parseMix();
+
+        run(mix, WARMUP_SECONDS);
+        mix.forEach(Endpoint::reset);
+        double elapsedSeconds = run(mix, DURATION_SECONDS);
+
+        Map<String, Object> results = report(mix, elapsedSeconds);
+        Path output = Path.of("target", "loadtest-result.json");
+        Files.createDirectories(output.getParent());
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), results);
+
+        for (Endpoint endpoint : mix) {
+            assertTrue(endpoint.errorRate() <= MAX_ERROR_RATE,
+                    endpoint.name + " error rate " + endpoint.errorRate() + " above " + MAX_ERROR_RATE);
+            if (MAX_P99_MS > 0) {
+                long p99 = TimeUnit.NANOSECONDS.toMillis(endpoint.latency.getValueAtPercentile(99));
+                assertTrue(p99 <= MAX_P99_MS, endpoint.name + " p99 " + p99 + "ms above " + MAX_P99_MS + "ms");
+            }
+        }
+    }
+
+    /**
+     * Registers the users whose tokens the read endpoints are called with
+     */
+    private void seedUsers() throws Exception {
+        for (int i = 0; i < SEED_USERS; i++) {
+            String email = "seed-" + i + "-" + UUID.randomUUID() + "@example.com";
+            HttpResponse<Void> response = httpClient.send(registerRequest(email), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 201) {
+                tokens.add(keycloak.issueToken(REALM, keycloak.getUserId(email), email, List.of("USER")));
+            }
+        }
+        assertTrue(!tokens.isEmpty(), "No seed user could be registered");
+    }
+
+    /**
+     * Sends requests at the configured rate for the given duration and waits for them to finish
+     *
+     * @param mix Endpoints with their weights
+     * @param seconds Duration
+     * @return double seconds taken, including the requests still in flight at the end
+     */
+    private double run(List<Endpoint> mix, int seconds) {
+        int totalWeight = mix.stream().mapToInt(endpoint -> endpoint.weight).sum();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long requests = (long) RATE * seconds;
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long intended = start + i * intervalNanos;
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            Endpoint endpoint = pick(mix, totalWeight);
+            inFlight.add(httpClient.sendAsync(endpoint.request(this), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        endpoint.record(System.nanoTime() - intended,
+                                error == null && response.statusCode() < 400);
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private Map<String, Object> report(List<Endpoint> mix, double elapsedSeconds) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        // One log line for the whole table, so it is not interleaved with other output
+        StringBuilder table = new StringBuilder(String.format("rate=%d/s duration=%ds keycloak-latency=%sms%n",
+                RATE, DURATION_SECONDS, System.getProperty("loadtest.keycloak-latency-ms", "20")));
+        table.append(String.format("%-10s %8s %7s %10s %9s %9s %9s %9s",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (Endpoint endpoint : mix) {
+            Histogram latency = endpoint.latency;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", latency.getTotalCount());
+            result.put("errors", endpoint.errors.get());
+            result.put("throughput", latency.getTotalCount() / elapsedSeconds);
+            result.put("p50Ms", millis(latency.getValueAtPercentile(50)));
+            result.put("p99Ms", millis(latency.getValueAtPercentile(99)));
+            result.put("p999Ms", millis(latency.getValueAtPercentile(99.9)));
+            result.put("maxMs", millis(latency.getMaxValue()));
+            results.put(endpoint.name, result);
+
+            table.append(String.format("%n%-10s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f", endpoint.name,
+                    latency.getTotalCount(), endpoint.errors.get(), result.get("throughput"),
+                    result.get("p50Ms"), result.get("p99Ms"), result.get("p999Ms"), result.get("maxMs")));
+        }
+        log.info("Load test results:{}{}", System.lineSeparator(), table);
+        return results;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private List<Endpoint> parseMix() {
+        List<Endpoint> mix = new ArrayList<>();
+        for (String entry : MIX.split(",")) {
+            String[] parts = entry.split("=");
+            mix.add(new Endpoint(parts[0].trim(), Integer.parseInt(parts[1].trim())));
+        }
+        return mix;
+    }
+
+    private static Endpoint pick(List<Endpoint> mix, int totalWeight) {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint endpoint : mix) {
+            roll -= endpoint.weight;
+            if (roll < 0) {
+                return endpoint;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private HttpRequest registerRequest(String email) throws IOException {
+        byte[] body = OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                "name", "Load Test",
+                "email", email,
+                "password", "Passw0rd!"));
+        return HttpRequest.newBuilder(uri("/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private HttpRequest authenticatedGet(String path) {
+        String token = tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api" + path);
+    }
+
+    /**
+     * One endpoint of the mix with its latency histogram
+     */
+    private static final class Endpoint {
+
+        private final String name;
+        private final int weight;
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+        private final AtomicLong errors = new AtomicLong();
+
+        Endpoint(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        HttpRequest request(AuthApiLoadTest test) {
+            try {
+                return switch (name) {
+                    case "register" -> test.registerRequest("load-" + UUID.randomUUID() + "@example.com");
+                    case "user" -> test.authenticatedGet("/auth/user");
+                    case "profile" -> test.authenticatedGet("/users/profile");
+                    default -> throw new IllegalArgumentException("Unknown endpoint " + name);
+                };
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void record(long nanos, boolean success) {
+            latency.recordValue(Math.min(nanos, latency.getHighestTrackableValue()));
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+
+        double errorRate() {
+            long count = latency.getTotalCount();
+            return count == 0 ? 0 : (double) errors.get() / count;
+        }
+
+        void reset() {
+            latency.reset();
+            errors.set(0);
+        }
+    }
+}
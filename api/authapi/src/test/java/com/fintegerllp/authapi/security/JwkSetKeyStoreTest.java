@@ -0,0 +1,90 @@
+package com.fintegerllp.authapi.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a token signed with a key missing from the cached key set
+ * triggers one JWKS fetch and then verifies, as after a Keycloak key rotation.
+ */
+class JwkSetKeyStoreTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile JWKSet published;
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = published.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void unknownKidIsFetchedOnDemand() throws Exception {
+        RSAKey oldKey = new RSAKeyGenerator(2048).keyID("old").generate();
+        RSAKey newKey = new RSAKeyGenerator(2048).keyID("new").generate();
+        published = new JWKSet(oldKey.toPublicJWK());
+
+        JwkSetKeyStore store = new JwkSetKeyStore(new SimpleMeterRegistry(),
+                new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/certs"), 2000, 2000, 0);
+        store.afterPropertiesSet();
+        assertEquals(1, fetches.get());
+
+        // Keycloak rotates to a key the store has not seen yet
+        published = new JWKSet(List.of(oldKey.toPublicJWK(), newKey.toPublicJWK()));
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, store));
+
+        assertEquals("user", processor.process(sign(newKey), null).getSubject());
+        assertEquals(2, fetches.get());
+
+        // The rotated key is cached now
+        assertEquals("user", processor.process(sign(newKey), null).getSubject());
+        assertEquals(2, fetches.get());
+    }
+
+    private static String sign(RSAKey key) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder().subject("user").build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
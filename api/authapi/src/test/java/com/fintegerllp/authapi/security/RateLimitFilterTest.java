@@ -0,0 +1,154 @@
+package com.fintegerllp.authapi.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs register requests through the rate limit filter with mock servlet
+ * objects: limits by email domain, encoded paths, the body replayed to the
+ * chain and the body size limit.
+ */
+class RateLimitFilterTest {
+
+    private static final int MAX_BODY_BYTES = 256;
+    private static final int CAPACITY = 2;
+    private static final Duration PERIOD = Duration.ofMinutes(2);
+
+    private final RateLimitFilter filter = new RateLimitFilter(new RateLimitProperties(100, MAX_BODY_BYTES, Map.of(
+            "register", new RateLimitProperties.Endpoint("/auth/register", null,
+                    new RateLimitProperties.Limit(CAPACITY, PERIOD)))),
+            new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Test
+    void emailDomainBurstThenRetryAfterOneInterval() throws Exception {
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(200, send(body("user" + i + "@example.com", 0), (request, response) -> { }).getStatus());
+        }
+
+        MockHttpServletResponse rejected = send(body("other@EXAMPLE.com", 0), (request, response) -> { });
+        assertEquals(429, rejected.getStatus());
+        assertEquals(Long.toString(PERIOD.dividedBy(CAPACITY).toSeconds()), rejected.getHeader("Retry-After"));
+
+        assertEquals(200, send(body("user@example.org", 0), (request, response) -> { }).getStatus());
+    }
+
+    @Test
+    void encodedPathIsLimitedLikeThePlainPath() throws Exception {
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(200, send("/api/auth/%72egister", body("user" + i + "@example.edu", 0), true,
+                    (request, response) -> { }).getStatus());
+        }
+
+        assertEquals(429, send("/api/auth/register;jsessionid=1", body("other@example.edu", 0), true,
+                (request, response) -> { }).getStatus());
+    }
+
+    @Test
+    void bodyIsReplayedToTheChain() throws Exception {
+        byte[] body = body("replay@example.com", 0);
+        AtomicReference<byte[]> streamed = new AtomicReference<>();
+        send(body, (request, response) -> streamed.set(request.getInputStream().readAllBytes()));
+        assertArrayEquals(body, streamed.get());
+
+        AtomicReference<String> read = new AtomicReference<>();
+        send(body, (request, response) -> {
+            try (BufferedReader reader = request.getReader()) {
+                read.set(reader.lines().collect(Collectors.joining("\n")));
+            }
+        });
+        assertEquals(new String(body, StandardCharsets.UTF_8), read.get());
+    }
+
+    @Test
+    void bodyOfExactlyMaxBytesIsStillLimited() throws Exception {
+        byte[] body = body("padded@example.net", MAX_BODY_BYTES);
+        assertEquals(MAX_BODY_BYTES, body.length);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(200, send(body, (request, response) -> { }).getStatus());
+        }
+        assertEquals(429, send(body, (request, response) -> { }).getStatus());
+    }
+
+    @Test
+    void largerBodyIsRefused() throws Exception {
+        byte[] body = body("padded@example.io", MAX_BODY_BYTES + 1);
+        AtomicReference<Object> reached = new AtomicReference<>();
+
+        assertEquals(413, send(body, true, (request, response) -> reached.set(request)).getStatus());
+        // Chunked, found out by reading
+        assertEquals(413, send(body, false, (request, response) -> reached.set(request)).getStatus());
+        assertNull(reached.get());
+    }
+
+    @Test
+    void replayedBodyDoesNotSupportNonBlockingReads() throws Exception {
+        send(body("async@example.com", 0), (request, response) -> assertThrows(IllegalStateException.class,
+                () -> request.getInputStream().setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() {
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+                })));
+    }
+
+    private MockHttpServletResponse send(byte[] body, FilterChain chain) throws Exception {
+        return send(body, true, chain);
+    }
+
+    private MockHttpServletResponse send(byte[] body, boolean contentLength, FilterChain chain) throws Exception {
+        return send("/api/auth/register", body, contentLength, chain);
+    }
+
+    private MockHttpServletResponse send(String uri, byte[] body, boolean contentLength, FilterChain chain)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri) {
+            @Override
+            public long getContentLengthLong() {
+                return contentLength ? super.getContentLengthLong() : -1;
+            }
+        };
+        request.setContextPath("/api");
+        request.setContentType("application/json");
+        request.setContent(body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    /**
+     * Builds a register body, padded with whitespace before the closing brace
+     *
+     * @param email Email
+     * @param length Length to pad to, 0 for none
+     * @return byte[] JSON body
+     */
+    private static byte[] body(String email, int length) {
+        String json = "{\"name\":\"Rate Limited\",\"email\":\"" + email + "\",\"password\":\"Passw0rd!\"";
+        return (json + " ".repeat(Math.max(0, length - json.length() - 1)) + "}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.fintegerllp.authapi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the generic cell rate algorithm behind the rate limits: a full
+ * bucket allows a burst of its capacity, after which the next request waits
+ * one emission interval.
+ */
+class RateLimiterTest {
+
+    private static final Duration PERIOD = Duration.ofMinutes(1);
+    private static final int CAPACITY = 6;
+    private static final Duration INTERVAL = PERIOD.dividedBy(CAPACITY);
+
+    @Test
+    void burstOfCapacityThenWaitOfOneInterval() {
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties.Limit(CAPACITY, PERIOD), 100);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(Duration.ZERO, limiter.tryAcquire("client"), "request " + (i + 1));
+        }
+
+        Duration wait = limiter.tryAcquire("client");
+        assertTrue(wait.compareTo(INTERVAL) <= 0, "waits at most one interval: " + wait);
+        assertTrue(wait.compareTo(INTERVAL.minusSeconds(1)) > 0, "waits about one interval: " + wait);
+        // A rejected request does not take a token
+        assertTrue(limiter.tryAcquire("client").compareTo(INTERVAL) <= 0);
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties.Limit(1, PERIOD), 100);
+
+        assertEquals(Duration.ZERO, limiter.tryAcquire("first"));
+        assertTrue(limiter.tryAcquire("first").compareTo(Duration.ZERO) > 0);
+        assertEquals(Duration.ZERO, limiter.tryAcquire("second"));
+    }
+}
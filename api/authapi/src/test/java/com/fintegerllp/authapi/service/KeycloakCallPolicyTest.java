@@ -0,0 +1,102 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs calls that ignore interruption through a policy with a single bulkhead
+ * permit, checking that a call abandoned by its time limit keeps the permit
+ * until it returns.
+ */
+class KeycloakCallPolicyTest {
+
+    @Test
+    void timedOutCallHoldsItsPermitUntilItReturns() throws Exception {
+        KeycloakCallPolicy policy = new KeycloakCallPolicy(
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom()
+                        .maxConcurrentCalls(1)
+                        .maxWaitDuration(Duration.ZERO)
+                        .build()),
+                RetryRegistry.ofDefaults(),
+                timeLimiters(Duration.ofMillis(100)),
+                new SimpleMeterRegistry(),
+                false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch returned = new CountDownLatch(1);
+
+        assertThrows(KeycloakIntegrationException.class, () -> policy.write("createUser", () -> {
+            try {
+                awaitUninterruptibly(release);
+                return "late";
+            } finally {
+                returned.countDown();
+            }
+        }));
+
+        KeycloakIntegrationException rejected = assertThrows(KeycloakIntegrationException.class,
+                () -> policy.write("createUser", () -> "second"));
+        assertTrue(KeycloakCallPolicy.notSent(rejected));
+
+        release.countDown();
+        assertTrue(returned.await(5, TimeUnit.SECONDS));
+        assertEquals("third", policy.write("createUser", () -> "third"));
+    }
+
+    @Test
+    void timeoutIsNotReportedAsNotSent() {
+        KeycloakCallPolicy policy = new KeycloakCallPolicy(
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(),
+                RetryRegistry.ofDefaults(),
+                timeLimiters(Duration.ofMillis(50)),
+                new SimpleMeterRegistry(),
+                false);
+
+        KeycloakIntegrationException timedOut = assertThrows(KeycloakIntegrationException.class,
+                () -> policy.write("createUser", () -> {
+                    Thread.sleep(1000);
+                    return "late";
+                }));
+        assertFalse(KeycloakCallPolicy.notSent(timedOut));
+    }
+
+    private static TimeLimiterRegistry timeLimiters(Duration timeout) {
+        return TimeLimiterRegistry.of(Map.of("keycloak", TimeLimiterConfig.custom()
+                .timeoutDuration(timeout)
+                .cancelRunningFuture(true)
+                .build()));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.fintegerllp.authapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.repository.EventCheckpointRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.support.LocalBackends;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Polls the admin events of the Keycloak stand-in with more events than
+ * max-pages can hold, checking that the oldest are applied first and the
+ * checkpoint never skips events left unread.
+ */
+@SpringBootTest(properties = {
+        "app.keycloak-events.enabled=true",
+        "app.keycloak-events.page-size=2",
+        "app.keycloak-events.max-pages=2",
+        "app.keycloak-events.poll-interval-ms=3600000",
+        "app.registration.outbox.poll-interval-ms=3600000",
+        "spring.jpa.show-sql=false"
+})
+class KeycloakEventIngestionWorkerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String ADMIN_EVENTS = "keycloak-admin-events";
+
+    @Autowired
+    private KeycloakEventIngestionWorker worker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EventCheckpointRepository checkpointRepository;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @Test
+    void backlogIsAppliedOldestFirst() throws Exception {
+        List<String> keycloakIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            keycloakIds.add(createUser());
+        }
+        // Stores the checkpoints, older events are not ours
+        worker.poll();
+        long checkpoint = lastEventTime();
+        Thread.sleep(5);
+
+        // Five events, one more than two pages of two
+        for (String keycloakId : keycloakIds) {
+            rename(keycloakId);
+            Thread.sleep(2);
+        }
+
+        assertEquals(4, worker.poll().events());
+        long oldestFour = lastEventTime();
+        assertTrue(oldestFour > checkpoint);
+        for (String keycloakId : keycloakIds.subList(0, 4)) {
+            assertEquals("Renamed User", name(keycloakId));
+        }
+        assertEquals("Original User", name(keycloakIds.get(4)));
+
+        // The newest event, and the one at the checkpoint again
+        assertEquals(2, worker.poll().events());
+        assertTrue(lastEventTime() > oldestFour);
+        assertEquals("Renamed User", name(keycloakIds.get(4)));
+    }
+
+    private long lastEventTime() {
+        return checkpointRepository.findById(ADMIN_EVENTS).orElseThrow().getLastEventTime();
+    }
+
+    private String name(String keycloakId) {
+        return userRepository.findByKeycloakId(keycloakId).orElseThrow().getName();
+    }
+
+    private String createUser() throws Exception {
+        String email = "events-" + UUID.randomUUID() + "@example.com";
+        HttpResponse<Void> response = admin(HttpRequest.newBuilder(uri(""))
+                .POST(body(Map.of("username", email, "email", email))));
+        assertEquals(201, response.statusCode());
+        String location = response.headers().firstValue("Location").orElseThrow();
+        String keycloakId = location.substring(location.lastIndexOf('/') + 1);
+        userRepository.save(User.builder()
+                .keycloakId(keycloakId)
+                .name("Original User")
+                .email(email)
+                .build());
+        return keycloakId;
+    }
+
+    private void rename(String keycloakId) throws Exception {
+        HttpResponse<Void> response = admin(HttpRequest.newBuilder(uri("/" + keycloakId))
+                .PUT(body(Map.of("firstName", "Renamed", "lastName", "User"))));
+        assertEquals(204, response.statusCode());
+    }
+
+    private HttpResponse<Void> admin(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.header("Content-Type", "application/json").build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static HttpRequest.BodyPublisher body(Map<String, String> json) throws Exception {
+        return HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(json));
+    }
+
+    private static URI uri(String path) {
+        return URI.create(LocalBackends.keycloak().getServerUrl() + "/admin/realms/fintegerllp/users" + path);
+    }
+}
@@ -0,0 +1,91 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.dto.RegistrationDto;
+import com.fintegerllp.authapi.exception.KeycloakIntegrationException;
+import com.fintegerllp.authapi.repository.RegistrationOutboxRepository;
+import com.fintegerllp.authapi.repository.model.RegistrationOutbox;
+import com.fintegerllp.authapi.support.LocalBackends;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Registers users while the Keycloak circuit breaker is held open, checking
+ * that calls the policy never sent leave no outbox entry behind.
+ */
+@SpringBootTest(properties = {
+        "app.registration.outbox.max-attempts=1",
+        "app.registration.outbox.poll-interval-ms=3600000",
+        "spring.jpa.show-sql=false"
+})
+class RegistrationPipelineTest {
+
+    @Autowired
+    private RegistrationPipeline registrationPipeline;
+
+    @Autowired
+    private RegistrationOutboxRepository outboxRepository;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @BeforeEach
+    void openCircuit() {
+        circuitBreaker().transitionToForcedOpenState();
+    }
+
+    @AfterEach
+    void closeCircuit() {
+        circuitBreaker().transitionToClosedState();
+    }
+
+    @Test
+    void registrationRejectedByTheOpenCircuitIsDiscarded() {
+        String email = email();
+
+        assertThrows(KeycloakIntegrationException.class, () -> registrationPipeline.register(RegistrationDto.builder()
+                .name("Rejected User")
+                .email(email)
+                .password("secret123")
+                .build()));
+        assertFalse(outboxRepository.existsByEmailIgnoreCase(email));
+    }
+
+    @Test
+    void recoveryDiscardsTheLastAttemptWhileTheCircuitIsOpen() {
+        String email = email();
+        RegistrationOutbox entry = outboxRepository.save(RegistrationOutbox.builder()
+                .email(email)
+                .name("Interrupted User")
+                .status(RegistrationOutbox.Status.PENDING)
+                .build());
+
+        registrationPipeline.recover(entry);
+
+        assertFalse(outboxRepository.existsByEmailIgnoreCase(email));
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return circuitBreakerRegistry.circuitBreaker("keycloak");
+    }
+
+    private static String email() {
+        return "pipeline-" + UUID.randomUUID() + "@example.com";
+    }
+}
@@ -0,0 +1,138 @@
+package com.fintegerllp.authapi.service;
+
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import com.fintegerllp.authapi.support.LocalBackends;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Provisions token subjects against the embedded Postgres, counting inserts,
+ * emails added to the Bloom filter and the statements of repeated attempts.
+ */
+@SpringBootTest(properties = {
+        "app.users.jit-provisioning.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "app.registration.outbox.poll-interval-ms=3600000"
+})
+class UserProvisionerTest {
+
+    private static final int CONCURRENT_REQUESTS = 8;
+
+    @Autowired
+    private UserProvisioner userProvisioner;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @Test
+    void concurrentFirstRequestsInsertOnce() throws Exception {
+        Jwt jwt = jwt(UUID.randomUUID().toString(), email());
+        double created = provisioned("created");
+        double filterEntries = filterEntries();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<UserSummary>>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return userProvisioner.provision(jwt);
+                }));
+            }
+            start.countDown();
+
+            List<Long> ids = new ArrayList<>();
+            for (Future<Optional<UserSummary>> result : results) {
+                ids.add(result.get().orElseThrow().id());
+            }
+            Long id = userRepository.findByKeycloakId(jwt.getSubject()).orElseThrow().getId();
+            ids.forEach(provisioned -> assertEquals(id, provisioned));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(created + 1, provisioned("created"));
+        assertEquals(filterEntries + 1, filterEntries());
+    }
+
+    @Test
+    void takenEmailIsRejectedOnceAndRemembered() {
+        String email = email();
+        userRepository.save(User.builder()
+                .keycloakId(UUID.randomUUID().toString())
+                .name("Existing")
+                .email(email)
+                .build());
+        Jwt jwt = jwt(UUID.randomUUID().toString(), email);
+        double rejected = provisioned("rejected");
+        double filterEntries = filterEntries();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertTrue(userProvisioner.provision(jwt).isEmpty());
+        assertTrue(statistics.getPrepareStatementCount() > 0);
+        assertEquals(rejected + 1, provisioned("rejected"));
+        assertEquals(filterEntries, filterEntries());
+
+        statistics.clear();
+        assertTrue(userProvisioner.provision(jwt).isEmpty());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(rejected + 1, provisioned("rejected"));
+    }
+
+    private double provisioned(String outcome) {
+        return meterRegistry.get("users.provisioned").tag("outcome", outcome).counter().count();
+    }
+
+    private double filterEntries() {
+        return meterRegistry.get("email.filter.entries").gauge().value();
+    }
+
+    private static Jwt jwt(String subject, String email) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .claim("email", email)
+                .claim("name", "Provisioned User")
+                .build();
+    }
+
+    private static String email() {
+        return "jit-" + UUID.randomUUID() + "@example.com";
+    }
+}
@@ -0,0 +1,177 @@
+package com.fintegerllp.authapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintegerllp.authapi.repository.ReconciliationStateRepository;
+import com.fintegerllp.authapi.repository.UserProfileRepository;
+import com.fintegerllp.authapi.repository.UserRepository;
+import com.fintegerllp.authapi.repository.model.ReconciliationState;
+import com.fintegerllp.authapi.repository.model.User;
+import com.fintegerllp.authapi.repository.model.UserProfile;
+import com.fintegerllp.authapi.repository.projection.UserSummary;
+import com.fintegerllp.authapi.support.LocalBackends;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the reconciliation over the Keycloak stand-in and the embedded
+ * Postgres, with users seeded on only one side.
+ */
+@SpringBootTest(properties = {
+        "app.reconciliation.enabled=true",
+        "app.reconciliation.repair=true",
+        "app.reconciliation.grace-period-seconds=0",
+        "app.reconciliation.page-size=1000",
+        "app.reconciliation.pages-per-run=1",
+        "app.reconciliation.interval-ms=3600000",
+        "app.registration.outbox.poll-interval-ms=3600000",
+        "spring.jpa.show-sql=false"
+})
+class UserReconciliationWorkerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Autowired
+    private UserReconciliationWorker worker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private ReconciliationStateRepository stateRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        LocalBackends.register(registry);
+    }
+
+    @Test
+    void driftOnBothSidesIsFoundAndRepaired() throws Exception {
+        // Start from a clean full sweep, whatever other tests left behind
+        resetWatermark();
+        worker.reconcile();
+
+        String keycloakOnlyEmail = email();
+        String keycloakOnlyId = createKeycloakUser(keycloakOnlyEmail);
+        String noEmailId = createKeycloakUser(null);
+        User localOnly = createLocalUser(UUID.randomUUID().toString(), email());
+        Thread.sleep(5);
+        double missingEmail = drift("missing_email");
+
+        UserReconciliationWorker.Result result = worker.reconcile();
+
+        assertEquals(2, result.keycloakOnly());
+        assertEquals(1, result.localOnly());
+        assertEquals(2, result.repaired());
+        assertEquals(missingEmail + 1, drift("missing_email"));
+
+        User created = userRepository.findByKeycloakId(keycloakOnlyId).orElseThrow();
+        assertEquals(keycloakOnlyEmail, created.getEmail());
+        assertTrue(userProfileRepository.findByUserId(created.getId()).isPresent());
+        assertFalse(userRepository.existsByKeycloakId(noEmailId));
+        assertFalse(userRepository.existsById(localOnly.getId()));
+        assertFalse(userProfileRepository.findByUserId(localOnly.getId()).isPresent());
+    }
+
+    @Test
+    void watermarkAdvancesBySlice() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            String email = email();
+            createLocalUser(createKeycloakUser(email), email);
+        }
+        List<UserSummary> firstIds = userRepository.findSummariesAfter(0, Limit.of(2));
+        resetWatermark();
+
+        ReflectionTestUtils.setField(worker, "pageSize", 1);
+        try {
+            worker.reconcile();
+            ReconciliationState state = stateRepository.findById("users").orElseThrow();
+            assertEquals(1, state.getKeycloakOffset());
+            assertEquals(firstIds.get(0).id(), state.getLastUserId());
+
+            worker.reconcile();
+            state = stateRepository.findById("users").orElseThrow();
+            assertEquals(2, state.getKeycloakOffset());
+            assertEquals(firstIds.get(1).id(), state.getLastUserId());
+            assertNotNull(state.getUpdatedAt());
+        } finally {
+            ReflectionTestUtils.setField(worker, "pageSize", 1000);
+        }
+    }
+
+    private void resetWatermark() {
+        stateRepository.findById("users").ifPresent(state -> {
+            state.setKeycloakOffset(0);
+            state.setLastUserId(0);
+            state.setLockedUntil(null);
+            stateRepository.save(state);
+        });
+    }
+
+    private double drift(String type) {
+        Counter counter = meterRegistry.find("users.reconciliation.drift").tag("type", type).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private String createKeycloakUser(String email) throws Exception {
+        Map<String, Object> user = new HashMap<>();
+        user.put("username", email == null ? "no-email-" + UUID.randomUUID() : email);
+        if (email != null) {
+            user.put("email", email);
+        }
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(
+                        URI.create(LocalBackends.keycloak().getServerUrl() + "/admin/realms/fintegerllp/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(user)))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        assertEquals(201, response.statusCode());
+        String location = response.headers().firstValue("Location").orElseThrow();
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private User createLocalUser(String keycloakId, String email) {
+        User user = userRepository.save(User.builder()
+                .keycloakId(keycloakId)
+                .name("Reconciled")
+                .email(email)
+                .build());
+        userProfileRepository.save(UserProfile.builder()
+                .user(user)
+                .profileData("{}")
+                .settings("{}")
+                .build());
+        return user;
+    }
+
+    private static String email() {
+        return "reconcile-" + UUID.randomUUID() + "@example.com";
+    }
+}
@@ -0,0 +1,322 @@
+package com.fintegerllp.authapi.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for the Keycloak endpoints the application calls: the token
+ * endpoint, the realm JWKS and the admin users API. Created users are kept in
+ * memory and access tokens for them are signed with a local RSA key published
+ * in the JWKS and listed by username like Keycloak does. User updates are
+ * recorded as admin events. Admin calls can be slowed down and made to fail,
+ * so a slow or flaky Keycloak can be simulated offline.
+ */
+public class KeycloakStandIn implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final RSAKey signingKey;
+    private final byte[] jwks;
+    private final Map<String, String> userIds = new ConcurrentSkipListMap<>();
+    private final Map<String, Map<String, Object>> users = new ConcurrentHashMap<>();
+    private final List<Map<String, Object>> adminEvents = new CopyOnWriteArrayList<>();
+    private volatile long latencyMs;
+    private volatile long latencyJitterMs;
+    private volatile double errorRate;
+
+    public KeycloakStandIn(long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+        this.jwks = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/realms/", this::handleRealm);
+        server.createContext("/admin/realms/", this::handleAdmin);
+        server.start();
+    }
+
+    /**
+     * Gets the base URL to use as keycloak.auth-server-url
+     *
+     * @return String base URL
+     */
+    public String getServerUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Adds a uniformly distributed extra delay of up to the given amount to admin calls
+     *
+     * @param latencyJitterMs Maximum extra delay
+     */
+    public void setLatencyJitterMs(long latencyJitterMs) {
+        this.latencyJitterMs = latencyJitterMs;
+    }
+
+    /**
+     * Makes the given share of admin calls fail with 503
+     *
+     * @param errorRate Share of failing calls, 0 to 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Gets the ID the stand-in assigned to a created user
+     *
+     * @param username Username
+     * @return String user ID, null if the user was not created
+     */
+    public String getUserId(String username) {
+        return userIds.get(username);
+    }
+
+    /**
+     * Issues an access token for a user, shaped like a Keycloak realm token
+     *
+     * @param realm Realm, part of the issuer
+     * @param userId Subject
+     * @param email Email and preferred username
+     * @param roles Realm roles
+     * @return String signed access token
+     */
+    public String issueToken(String realm, String userId, String email, List<String> roles) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(getServerUrl() + "/realms/" + realm)
+                .subject(userId)
+                .audience("account")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("typ", "Bearer")
+                .claim("realm_access", Map.of("roles", roles))
+                .claim("scope", "openid email profile")
+                .claim("email", email)
+                .claim("preferred_username", email)
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256)
+                    .type(JOSEObjectType.JWT)
+                    .keyID(signingKey.getKeyID())
+                    .build(), claims);
+            jwt.sign(new RSASSASigner(signingKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void handleRealm(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/protocol/openid-connect/certs")) {
+            respond(exchange, 200, jwks);
+            return;
+        }
+
+        // Admin client token; the admin API does not check it
+        String realm = path.substring("/realms/".length(), path.indexOf('/', "/realms/".length()));
+        String accessToken = issueToken(realm, UUID.randomUUID().toString(), "admin", List.of("admin"));
+        respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                "access_token", accessToken,
+                "expires_in", 300,
+                "refresh_expires_in", 1800,
+                "refresh_token", accessToken,
+                "token_type", "Bearer")));
+    }
+
+    private void handleAdmin(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        long jitter = latencyJitterMs;
+        sleep(latencyMs + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0));
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(exchange, 503, new byte[0]);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        switch (exchange.getRequestMethod()) {
+            case "POST" -> {
+                JsonNode user = OBJECT_MAPPER.readTree(body);
+                String username = user.path("username").asText();
+                String userId = UUID.randomUUID().toString();
+                if (userIds.putIfAbsent(username, userId) != null) {
+                    respond(exchange, 409, new byte[0]);
+                    return;
+                }
+                Map<String, Object> created = new ConcurrentHashMap<>(Map.of(
+                        "username", username,
+                        "firstName", user.path("firstName").asText(""),
+                        "lastName", user.path("lastName").asText(""),
+                        "createdTimestamp", System.currentTimeMillis()));
+                // Like Keycloak, a user created without an email has none
+                if (user.hasNonNull("email")) {
+                    created.put("email", user.get("email").asText());
+                }
+                users.put(userId, created);
+                exchange.getResponseHeaders().add("Location", getServerUrl() + path + "/" + userId);
+                respond(exchange, 201, new byte[0]);
+            }
+            case "GET" -> {
+                if (path.endsWith("/admin-events")) {
+                    respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(newestFirst(adminEvents,
+                            intQuery(exchange, "first", 0), intQuery(exchange, "max", 100))));
+                } else if (path.endsWith("/events")) {
+                    respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(List.of()));
+                } else if (path.endsWith("/users") && query(exchange, "username") == null) {
+                    respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(list(
+                            intQuery(exchange, "first", 0), intQuery(exchange, "max", 100))));
+                } else if (path.endsWith("/users")) {
+                    String username = query(exchange, "username");
+                    String userId = userIds.get(username);
+                    respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(userId == null
+                            ? List.of() : List.of(representation(userId))));
+                } else if (users.containsKey(id)) {
+                    respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(representation(id)));
+                } else {
+                    respond(exchange, 404, new byte[0]);
+                }
+            }
+            case "PUT" -> {
+                Map<String, Object> user = users.get(id);
+                if (user == null) {
+                    // Sub-resources such as reset-password are accepted without effect
+                    respond(exchange, path.endsWith("/users/" + id) ? 404 : 204, new byte[0]);
+                    return;
+                }
+                OBJECT_MAPPER.readTree(body).fields().forEachRemaining(field -> {
+                    if (field.getValue().isTextual() && user.containsKey(field.getKey())) {
+                        user.put(field.getKey(), field.getValue().asText());
+                    }
+                });
+                adminEvents.add(Map.of(
+                        "time", System.currentTimeMillis(),
+                        "operationType", "UPDATE",
+                        "resourceType", "USER",
+                        "resourcePath", "users/" + id));
+                respond(exchange, 204, new byte[0]);
+            }
+            case "DELETE" -> {
+                userIds.values().remove(id);
+                users.remove(id);
+                respond(exchange, 204, new byte[0]);
+            }
+            default -> respond(exchange, 204, new byte[0]);
+        }
+    }
+
+    private List<Map<String, Object>> list(int first, int max) {
+        return userIds.values().stream()
+                .skip(first)
+                .limit(max)
+                .map(this::representation)
+                .toList();
+    }
+
+    private Map<String, Object> representation(String userId) {
+        Map<String, Object> representation = new HashMap<>(users.getOrDefault(userId, Map.of()));
+        representation.put("id", userId);
+        representation.put("enabled", true);
+        return representation;
+    }
+
+    private static List<Map<String, Object>> newestFirst(List<Map<String, Object>> events, int first, int max) {
+        List<Map<String, Object>> page = new ArrayList<>(events);
+        Collections.reverse(page);
+        return page.stream().skip(first).limit(max).toList();
+    }
+
+    private static int intQuery(HttpExchange exchange, String name, int defaultValue) {
+        String value = query(exchange, name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String query(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return URLDecoder.decode(parameter.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        // The JDK server closes idle keep-alive connections under load, which the
+        // pooled client sees as NoHttpResponseException
+        exchange.getResponseHeaders().add("Connection", "close");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
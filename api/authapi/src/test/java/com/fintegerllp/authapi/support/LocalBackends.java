@@ -0,0 +1,75 @@
+package com.fintegerllp.authapi.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Embedded Postgres and Keycloak stand-in shared by the tests that boot the
+ * whole application. Both are started on first use and stopped when the JVM
+ * exits, so cached application contexts keep working across test classes.
+ */
+public final class LocalBackends {
+
+    private static EmbeddedPostgres postgres;
+    private static KeycloakStandIn keycloak;
+
+    private LocalBackends() {
+    }
+
+    /**
+     * Starts the backends if needed and points the application at them
+     *
+     * @param registry Registry of a {@code @DynamicPropertySource} method
+     */
+    public static void register(DynamicPropertyRegistry registry) {
+        start();
+        registry.add("spring.datasource.url", () -> "jdbc:postgresql://localhost:" + postgres.getPort()
+                + "/postgres?reWriteBatchedInserts=true");
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("keycloak.auth-server-url", keycloak::getServerUrl);
+    }
+
+    /**
+     * Gets the embedded Postgres, starting the backends if needed
+     *
+     * @return EmbeddedPostgres database
+     */
+    public static EmbeddedPostgres postgres() {
+        start();
+        return postgres;
+    }
+
+    /**
+     * Gets the Keycloak stand-in, starting the backends if needed
+     *
+     * @return KeycloakStandIn stand-in
+     */
+    public static KeycloakStandIn keycloak() {
+        start();
+        return keycloak;
+    }
+
+    private static synchronized void start() {
+        if (postgres != null) {
+            return;
+        }
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+            keycloak = new KeycloakStandIn(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            keycloak.close();
+            try {
+                postgres.close();
+            } catch (IOException e) {
+                // The JVM is exiting
+            }
+        }));
+    }
+}